@@ -12,8 +12,9 @@ public abstract class BaseCommandHandler implements CommandHandler {
     }
     
     protected void sendBulkString(OutputStream out, String msg) throws IOException {
-        out.write(("$" + msg.length() + "\r\n" + msg + "\r\n")
-                .getBytes(StandardCharsets.UTF_8));
+        StringBuilder reply = new StringBuilder();
+        appendBulk(reply, msg);
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
         out.flush();
     }
     
@@ -27,18 +28,36 @@ public abstract class BaseCommandHandler implements CommandHandler {
         out.flush();
     }
     
+    /**
+     * Sends an error with its own code (e.g. NOGROUP) in place of ERR.
+     */
+    protected void sendError(OutputStream out, String code, String msg) throws IOException {
+        out.write(("-" + code + " " + msg + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
     protected void sendInteger(OutputStream out, int value) throws IOException {
         out.write((":" + value + "\r\n").getBytes(StandardCharsets.UTF_8));
         out.flush();
     }
     
     protected void sendArray(OutputStream out, List<String> items) throws IOException {
-        out.write(("*" + items.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
-        
+        StringBuilder reply = new StringBuilder();
+        reply.append("*").append(items.size()).append("\r\n");
         for (String item : items) {
-            out.write(("$" + item.length() + "\r\n" + item + "\r\n")
-                    .getBytes(StandardCharsets.UTF_8));
+            appendBulk(reply, item);
         }
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
         out.flush();
     }
+    
+    /**
+     * Appends a bulk string to a reply being built. The length is the UTF-8
+     * byte count, not the char count. Replies built outside a handler (list
+     * and stream wake-ups, pub/sub messages) use it too.
+     */
+    protected static void appendBulk(StringBuilder sb, String value) {
+        sb.append("$").append(value.getBytes(StandardCharsets.UTF_8).length).append("\r\n")
+            .append(value).append("\r\n");
+    }
 }
\ No newline at end of file
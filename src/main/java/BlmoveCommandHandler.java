@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * BLMOVE source destination LEFT|RIGHT LEFT|RIGHT timeout
+ */
+public class BlmoveCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    private final CommandPropagator propagator;
+    
+    public BlmoveCommandHandler(ListStore listStore, CommandPropagator propagator) {
+        this.listStore = listStore;
+        this.propagator = propagator;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        execute(args, out, null);
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out, BlockingContext blocking) throws IOException {
+        if (args.length < 6) {
+            sendError(out, "wrong number of arguments for 'blmove' command");
+            return;
+        }
+        
+        String source = args[1];
+        String destination = args[2];
+        String whereFrom = args[3].toUpperCase();
+        String whereTo = args[4].toUpperCase();
+        if (!isSide(whereFrom) || !isSide(whereTo)) {
+            sendError(out, "syntax error");
+            return;
+        }
+        boolean fromLeft = whereFrom.equals("LEFT");
+        boolean toLeft = whereTo.equals("LEFT");
+        
+        long timeoutMs = BlpopCommandHandler.parseTimeout(args[5]);
+        if (timeoutMs < 0) {
+            sendError(out, "timeout is not a float or out of range");
+            return;
+        }
+        
+        PopResult moved = listStore.move(source, destination, fromLeft, toLeft);
+        if (moved != null) {
+            String value = moved.values.get(0);
+            sendBulkString(out, value);
+            // Replicas apply the move as a single atomic LMOVE
+            propagator.alsoPropagate("LMOVE", source, destination, whereFrom, whereTo);
+            return;
+        }
+        
+        if (blocking == null) {
+            sendNullBulkString(out);
+            return;
+        }
+        
+        // Park the client; a push or the timer will answer it
+        BlockedClient client = new BlockedClient("BLMOVE", new String[] { source }, out,
+                fromLeft, 1, destination, toLeft);
+        blocking.park(client);
+        listStore.block(client, timeoutMs);
+    }
+    
+    private boolean isSide(String where) {
+        return where.equals("LEFT") || where.equals("RIGHT");
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "BLMOVE";
+    }
+}
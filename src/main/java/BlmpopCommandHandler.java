@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * BLMPOP timeout numkeys key [key ...] LEFT|RIGHT [COUNT count]
+ */
+public class BlmpopCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    private final CommandPropagator propagator;
+    
+    public BlmpopCommandHandler(ListStore listStore, CommandPropagator propagator) {
+        this.listStore = listStore;
+        this.propagator = propagator;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        execute(args, out, null);
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out, BlockingContext blocking) throws IOException {
+        if (args.length < 5) {
+            sendError(out, "wrong number of arguments for 'blmpop' command");
+            return;
+        }
+        
+        long timeoutMs = BlpopCommandHandler.parseTimeout(args[1]);
+        if (timeoutMs < 0) {
+            sendError(out, "timeout is not a float or out of range");
+            return;
+        }
+        
+        int numKeys;
+        try {
+            numKeys = Integer.parseInt(args[2]);
+        } catch (NumberFormatException e) {
+            sendError(out, "numkeys should be greater than 0");
+            return;
+        }
+        if (numKeys <= 0 || args.length < 4 + numKeys) {
+            sendError(out, "numkeys should be greater than 0");
+            return;
+        }
+        
+        String[] keys = Arrays.copyOfRange(args, 3, 3 + numKeys);
+        String where = args[3 + numKeys].toUpperCase();
+        if (!where.equals("LEFT") && !where.equals("RIGHT")) {
+            sendError(out, "syntax error");
+            return;
+        }
+        boolean left = where.equals("LEFT");
+        
+        int count = 1;
+        int optIdx = 4 + numKeys;
+        if (optIdx < args.length) {
+            if (optIdx + 1 >= args.length || !args[optIdx].equalsIgnoreCase("COUNT")) {
+                sendError(out, "syntax error");
+                return;
+            }
+            try {
+                count = Integer.parseInt(args[optIdx + 1]);
+            } catch (NumberFormatException e) {
+                count = 0;
+            }
+            if (count <= 0) {
+                sendError(out, "count should be greater than 0");
+                return;
+            }
+        }
+        
+        PopResult popped = listStore.popFirstNonEmpty(keys, left, count);
+        if (popped != null) {
+            sendKeyWithValues(out, popped);
+            propagator.alsoPropagate(left ? "LPOP" : "RPOP", popped.key, String.valueOf(popped.values.size()));
+            return;
+        }
+        
+        if (blocking == null) {
+            out.write("*-1\r\n".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        
+        // Park the client; a push or the timer will answer it
+        BlockedClient client = new BlockedClient("BLMPOP", keys, out, left, count, null, false);
+        blocking.park(client);
+        listStore.block(client, timeoutMs);
+    }
+    
+    private void sendKeyWithValues(OutputStream out, PopResult popped) throws IOException {
+        StringBuilder reply = new StringBuilder("*2\r\n");
+        appendBulk(reply, popped.key);
+        reply.append("*").append(popped.values.size()).append("\r\n");
+        for (String value : popped.values) {
+            appendBulk(reply, value);
+        }
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "BLMPOP";
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Blocking commands (BLPOP, BRPOP, BLMPOP, BLMOVE, XREAD and XREADGROUP
+ * with BLOCK) of one client connection. A handler may park the client only when given a context;
+ * EXEC and the replication stream run commands without one, and there a
+ * blocking command answers as if it had timed out.
+ *
+ * While the client is parked its connection thread waits for the reply
+ * instead of reading further commands, so pipelined commands run after
+ * it, as in Redis. The thread still notices the client going away by
+ * peeking at the socket every PROBE_INTERVAL_MS.
+ */
+public class BlockingContext {
+    private static final long PROBE_INTERVAL_MS = 100;
+
+    private final Socket socket;
+    private final PushbackInputStream in;
+    private ParkedClient parked;  // connection thread only
+
+    /**
+     * in must be the stream the connection's reader decodes, so a byte
+     * peeked and pushed back here is read again in order.
+     */
+    public BlockingContext(Socket socket, PushbackInputStream in) {
+        this.socket = socket;
+        this.in = in;
+    }
+
+    public void park(ParkedClient client) {
+        parked = client;
+    }
+
+    /**
+     * Waits until the client parked by the last command has its reply.
+     * Returns false if the connection closed meanwhile; the client is then
+     * unparked.
+     */
+    public boolean awaitAnswer() throws IOException {
+        ParkedClient client = parked;
+        if (client == null) {
+            return true;
+        }
+        try {
+            while (!client.awaitAnswer(PROBE_INTERVAL_MS)) {
+                if (isClosed()) {
+                    cancel();
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            return false;
+        }
+        parked = null;
+        return true;
+    }
+
+    /**
+     * Called when the connection closes: a client still parked is taken out
+     * of the wait queues, so no write hands it an element it can't receive.
+     */
+    public void cancel() {
+        ParkedClient client = parked;
+        parked = null;
+        if (client != null && client.finish()) {
+            if (client.timeout != null) {
+                client.timeout.cancel();
+            }
+            client.unregister();
+        }
+    }
+
+    /**
+     * Whether the peer has closed the connection, found by peeking one byte
+     * from the socket. Whatever the reader has buffered comes earlier in
+     * the stream, so pushing the byte back keeps the input in order.
+     */
+    private boolean isClosed() throws IOException {
+        socket.setSoTimeout(1);
+        try {
+            int b = in.read();
+            if (b < 0) {
+                return true;
+            }
+            in.unread(b);
+            return false;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } finally {
+            socket.setSoTimeout(0);
+        }
+    }
+}
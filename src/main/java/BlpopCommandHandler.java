@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class BlpopCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    private final CommandPropagator propagator;
+    
+    public BlpopCommandHandler(ListStore listStore, CommandPropagator propagator) {
+        this.listStore = listStore;
+        this.propagator = propagator;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        execute(args, out, null);
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out, BlockingContext blocking) throws IOException {
+        if (args.length < 3) {
+            sendError(out, "BLPOP requires at least one key and a timeout");
+            return;
+        }
+        
+        String[] keys = Arrays.copyOfRange(args, 1, args.length - 1);
+        long timeoutMs = parseTimeout(args[args.length - 1]);
+        if (timeoutMs < 0) {
+            sendError(out, "timeout is not a float or out of range");
+            return;
+        }
+        
+        PopResult popped = listStore.popFirstNonEmpty(keys, true, 1);
+        if (popped != null) {
+            sendArray(out, Arrays.asList(popped.key, popped.values.get(0)));
+            propagator.alsoPropagate("LPOP", popped.key);
+            return;
+        }
+        
+        // Not on a client connection (EXEC, replication stream): nobody could answer later
+        if (blocking == null) {
+            out.write("*-1\r\n".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        
+        // Park the client; a push or the timer will answer it
+        BlockedClient client = new BlockedClient("BLPOP", keys, out, true, 1, null, false);
+        blocking.park(client);
+        listStore.block(client, timeoutMs);
+    }
+    
+    /**
+     * Parses a timeout given in (possibly fractional) seconds into
+     * milliseconds. Returns -1 if it is malformed or negative.
+     */
+    static long parseTimeout(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            if (seconds < 0 || Double.isNaN(seconds) || Double.isInfinite(seconds)) {
+                return -1;
+            }
+            return (long) Math.ceil(seconds * 1000);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "BLPOP";
+    }
+}
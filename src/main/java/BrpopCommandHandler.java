@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class BrpopCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    private final CommandPropagator propagator;
+    
+    public BrpopCommandHandler(ListStore listStore, CommandPropagator propagator) {
+        this.listStore = listStore;
+        this.propagator = propagator;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        execute(args, out, null);
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out, BlockingContext blocking) throws IOException {
+        if (args.length < 3) {
+            sendError(out, "BRPOP requires at least one key and a timeout");
+            return;
+        }
+        
+        String[] keys = Arrays.copyOfRange(args, 1, args.length - 1);
+        long timeoutMs = BlpopCommandHandler.parseTimeout(args[args.length - 1]);
+        if (timeoutMs < 0) {
+            sendError(out, "timeout is not a float or out of range");
+            return;
+        }
+        
+        PopResult popped = listStore.popFirstNonEmpty(keys, false, 1);
+        if (popped != null) {
+            sendArray(out, Arrays.asList(popped.key, popped.values.get(0)));
+            propagator.alsoPropagate("RPOP", popped.key);
+            return;
+        }
+        
+        if (blocking == null) {
+            out.write("*-1\r\n".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        
+        // Park the client; a push or the timer will answer it
+        BlockedClient client = new BlockedClient("BRPOP", keys, out, false, 1, null, false);
+        blocking.park(client);
+        listStore.block(client, timeoutMs);
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "BRPOP";
+    }
+}
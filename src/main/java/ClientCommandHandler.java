@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CLIENT ID / TRACKING / CACHING / GETREDIR for the calling connection.
+ */
+public class ClientCommandHandler extends BaseCommandHandler {
+    private final ClientTracking clientTracking;
+    private final ClientTracking.Client client;
+
+    public ClientCommandHandler(ClientTracking clientTracking, ClientTracking.Client client) {
+        this.clientTracking = clientTracking;
+        this.client = client;
+    }
+
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 2) {
+            sendError(out, "wrong number of arguments for 'client' command");
+            return;
+        }
+
+        String subcommand = args[1].toUpperCase();
+        switch (subcommand) {
+            case "ID":
+                sendInteger(out, (int) client.id());
+                return;
+            case "TRACKING":
+                tracking(args, out);
+                return;
+            case "CACHING":
+                caching(args, out);
+                return;
+            case "GETREDIR":
+                sendInteger(out, client.isTracking() ? (int) client.redirect() : -1);
+                return;
+            default:
+                sendError(out, "unknown subcommand '" + args[1] + "'. Try CLIENT HELP.");
+        }
+    }
+
+    private void tracking(String[] args, OutputStream out) throws IOException {
+        if (args.length < 3) {
+            sendError(out, "wrong number of arguments for 'client|tracking' command");
+            return;
+        }
+
+        long redirect = 0;
+        boolean bcast = false;
+        boolean optIn = false;
+        boolean optOut = false;
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            String option = args[i].toUpperCase();
+            if (option.equals("REDIRECT") && i + 1 < args.length) {
+                try {
+                    redirect = Long.parseLong(args[++i]);
+                } catch (NumberFormatException e) {
+                    sendError(out, "value is not an integer or out of range");
+                    return;
+                }
+                if (!clientTracking.exists(redirect)) {
+                    sendError(out, "The client ID you want redirect to does not exist");
+                    return;
+                }
+            } else if (option.equals("PREFIX") && i + 1 < args.length) {
+                prefixes.add(args[++i]);
+            } else if (option.equals("BCAST")) {
+                bcast = true;
+            } else if (option.equals("OPTIN")) {
+                optIn = true;
+            } else if (option.equals("OPTOUT")) {
+                optOut = true;
+            } else {
+                sendError(out, "syntax error");
+                return;
+            }
+        }
+
+        String state = args[2].toUpperCase();
+        if (state.equals("OFF")) {
+            clientTracking.disable(client);
+            sendSimpleString(out, "OK");
+            return;
+        }
+        if (!state.equals("ON")) {
+            sendError(out, "syntax error");
+            return;
+        }
+        if (!bcast && !prefixes.isEmpty()) {
+            sendError(out, "PREFIX option requires BCAST mode to be enabled");
+            return;
+        }
+        if (optIn && optOut) {
+            sendError(out, "You can't use both OPTIN and OPTOUT");
+            return;
+        }
+        if (bcast && (optIn || optOut)) {
+            sendError(out, "OPTIN and OPTOUT are not compatible with BCAST");
+            return;
+        }
+        if (client.isTracking() && client.bcast != bcast) {
+            sendError(out, "You can't switch BCAST mode on/off before disabling tracking for this client, "
+                    + "and then re-enabling it with a different mode.");
+            return;
+        }
+        if (client.isTracking() && (client.optIn != optIn || client.optOut != optOut)) {
+            sendError(out, "You can't switch OPTIN/OPTOUT mode before disabling tracking for this client, "
+                    + "and then re-enabling it with a different mode.");
+            return;
+        }
+
+        clientTracking.enable(client, redirect, bcast, prefixes, optIn, optOut);
+        sendSimpleString(out, "OK");
+    }
+
+    private void caching(String[] args, OutputStream out) throws IOException {
+        if (args.length != 3) {
+            sendError(out, "wrong number of arguments for 'client|caching' command");
+            return;
+        }
+        if (!client.isTracking() || !(client.optIn || client.optOut)) {
+            sendError(out, "CLIENT CACHING can be called only when the client is in tracking mode "
+                    + "with OPTIN or OPTOUT mode enabled");
+            return;
+        }
+
+        String value = args[2].toUpperCase();
+        if (value.equals("YES")) {
+            if (!client.optIn) {
+                sendError(out, "CLIENT CACHING YES is only valid when tracking is enabled in OPTIN mode.");
+                return;
+            }
+            client.caching = Boolean.TRUE;
+        } else if (value.equals("NO")) {
+            if (!client.optOut) {
+                sendError(out, "CLIENT CACHING NO is only valid when tracking is enabled in OPTOUT mode.");
+                return;
+            }
+            client.caching = Boolean.FALSE;
+        } else {
+            sendError(out, "syntax error");
+            return;
+        }
+        sendSimpleString(out, "OK");
+    }
+
+    @Override
+    public String getCommandName() {
+        return "CLIENT";
+    }
+
+    @Override
+    public boolean isWriteCommand() {
+        return false;
+    }
+}
@@ -0,0 +1,245 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-assisted client-side caching (CLIENT TRACKING).
+ *
+ * In the default mode the keys a tracking client reads are remembered in
+ * the tracking table (key -> client IDs). The first change to such a key
+ * sends those clients one invalidation message and forgets the entry. In
+ * BCAST mode nothing is remembered: every change to a key starting with one
+ * of the client's prefixes is announced.
+ *
+ * This server speaks RESP2, so invalidations are pub/sub messages on
+ * __redis__:invalidate. They go to the REDIRECT client, or to the tracking
+ * client itself, and as in Redis they are only delivered while that
+ * connection is in subscribed mode. The table holds at most
+ * tracking-table-max-keys keys. Past that, arbitrary keys are evicted and
+ * invalidated so clients drop them too.
+ *
+ * Stores report changes through KeyspaceNotifier. With no client tracking,
+ * that costs one volatile read.
+ */
+public class ClientTracking {
+    static final String CHANNEL = "__redis__:invalidate";
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private static volatile long maxKeys = 1_000_000;
+
+    private final Map<Long, Client> clients = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Long>> table = new ConcurrentHashMap<>();
+    // BCAST prefixes -> clients; "" matches every key. Guarded by itself.
+    private final Map<String, Set<Client>> prefixes = new HashMap<>();
+    private final AtomicInteger trackingClients = new AtomicInteger();
+
+    static void setMaxKeys(long keys) {
+        maxKeys = Math.max(keys, 0);
+    }
+
+    static long maxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Registers a new connection. Its invalidations (when tracking without
+     * REDIRECT) and any redirected to it go through queue.
+     */
+    public Client register(SubscriberQueue queue) {
+        Client client = new Client(NEXT_ID.incrementAndGet(), queue);
+        clients.put(client.id, client);
+        return client;
+    }
+
+    public void unregister(Client client) {
+        disable(client);
+        clients.remove(client.id);
+    }
+
+    public boolean exists(long clientId) {
+        return clients.containsKey(clientId);
+    }
+
+    /**
+     * CLIENT TRACKING ON. The caller has validated the option combination.
+     */
+    public void enable(Client client, long redirect, boolean bcast, List<String> bcastPrefixes,
+                       boolean optIn, boolean optOut) {
+        boolean wasOn = client.enabled;
+        synchronized (prefixes) {
+            for (String prefix : client.prefixes) {
+                removePrefix(prefix, client);
+            }
+            client.prefixes.clear();
+            if (bcast) {
+                client.prefixes.addAll(bcastPrefixes.isEmpty() ? List.of("") : bcastPrefixes);
+                for (String prefix : client.prefixes) {
+                    prefixes.computeIfAbsent(prefix, k -> new HashSet<>()).add(client);
+                }
+            }
+        }
+        client.redirect = redirect;
+        client.bcast = bcast;
+        client.optIn = optIn;
+        client.optOut = optOut;
+        client.caching = null;
+        client.enabled = true;
+        if (!wasOn) {
+            trackingClients.incrementAndGet();
+        }
+    }
+
+    /**
+     * CLIENT TRACKING OFF. Table entries naming the client are left to be
+     * skipped and dropped when their key changes.
+     */
+    public void disable(Client client) {
+        if (!client.enabled) {
+            return;
+        }
+        client.enabled = false;
+        synchronized (prefixes) {
+            for (String prefix : client.prefixes) {
+                removePrefix(prefix, client);
+            }
+            client.prefixes.clear();
+        }
+        trackingClients.decrementAndGet();
+    }
+
+    private void removePrefix(String prefix, Client client) {
+        Set<Client> subscribers = prefixes.get(prefix);
+        if (subscribers != null && subscribers.remove(client) && subscribers.isEmpty()) {
+            prefixes.remove(prefix);
+        }
+    }
+
+    public boolean isActive() {
+        return trackingClients.get() > 0;
+    }
+
+    /**
+     * Called before client runs command: remembers the keys it is about to
+     * read, honouring OPTIN/OPTOUT and CLIENT CACHING.
+     */
+    public void beforeCommand(Client client, String command, String[] args) {
+        if (!client.enabled || client.bcast) {
+            return;
+        }
+        Boolean caching = client.caching;
+        if (command.equals("CLIENT")) {
+            return;  // CLIENT CACHING applies to the command after it
+        }
+        client.caching = null;
+        boolean track = client.optIn ? Boolean.TRUE.equals(caching)
+                : !client.optOut || !Boolean.FALSE.equals(caching);
+        if (!track) {
+            return;
+        }
+        for (String key : readKeys(command, args)) {
+            table.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(client.id);
+        }
+        if (table.mappingCount() > maxKeys) {
+            evict();
+        }
+    }
+
+    /**
+     * Called for every change to key, from KeyspaceNotifier.
+     */
+    public void invalidate(String key) {
+        Set<Long> ids = table.remove(key);
+        if (ids != null) {
+            for (long id : ids) {
+                Client client = clients.get(id);
+                if (client != null && client.enabled && !client.bcast) {
+                    send(client, key);
+                }
+            }
+        }
+        synchronized (prefixes) {
+            for (Map.Entry<String, Set<Client>> entry : prefixes.entrySet()) {
+                if (key.startsWith(entry.getKey())) {
+                    for (Client client : entry.getValue()) {
+                        send(client, key);
+                    }
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<String> keys = table.keySet().iterator();
+        while (table.mappingCount() > maxKeys && keys.hasNext()) {
+            invalidate(keys.next());
+        }
+    }
+
+    private void send(Client client, String key) {
+        SubscriberQueue target = client.queue;
+        if (client.redirect != 0) {
+            Client redirect = clients.get(client.redirect);
+            if (redirect == null) {
+                return;
+            }
+            target = redirect.queue;
+        }
+        int keyLength = key.getBytes(StandardCharsets.UTF_8).length;
+        String frame = "*3\r\n$7\r\nmessage\r\n$" + CHANNEL.length() + "\r\n" + CHANNEL + "\r\n"
+                + "*1\r\n$" + keyLength + "\r\n" + key + "\r\n";
+        target.enqueue(frame.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Keys read by the read-only commands whose results a client may cache.
+     */
+    static List<String> readKeys(String command, String[] args) {
+        switch (command) {
+            case "GET":
+            case "TYPE":
+            case "LRANGE":
+            case "LINDEX":
+            case "LLEN":
+            case "LPOS":
+            case "XRANGE":
+            case "XREVRANGE":
+            case "XLEN":
+                return args.length > 1 ? List.of(args[1]) : List.of();
+            case "EXISTS":
+                return Arrays.asList(args).subList(1, args.length);
+            default:
+                return List.of();
+        }
+    }
+
+    public static final class Client {
+        final long id;
+        final SubscriberQueue queue;
+        final List<String> prefixes = new ArrayList<>();
+        volatile boolean enabled;
+        volatile long redirect;
+        volatile boolean bcast;
+        volatile boolean optIn;
+        volatile boolean optOut;
+        Boolean caching;  // CLIENT CACHING for the next command; client's thread only
+
+        Client(long id, SubscriberQueue queue) {
+            this.id = id;
+            this.queue = queue;
+        }
+
+        public long id() {
+            return id;
+        }
+
+        public boolean isTracking() {
+            return enabled;
+        }
+
+        public long redirect() {
+            return redirect;
+        }
+    }
+}
@@ -5,6 +5,14 @@ import java.io.OutputStream;
 public interface CommandHandler {
     void execute(String[] args, OutputStream out) throws IOException;
     
+    /**
+     * Runs the command for a client connection, which blocking commands may
+     * park through blocking. Everything else ignores it.
+     */
+    default void execute(String[] args, OutputStream out, BlockingContext blocking) throws IOException {
+        execute(args, out);
+    }
+    
     String getCommandName();
     
     default boolean isWriteCommand() {
@@ -0,0 +1,27 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects extra commands to replicate after the command currently being
+ * executed, e.g. the LPOP a BLPOP turned into once it was served.
+ *
+ * Pending commands are kept per thread; Main drains them right after the
+ * command that produced them, so replicas see them in the same order.
+ */
+public class CommandPropagator {
+    private final ThreadLocal<List<String[]>> pending = ThreadLocal.withInitial(ArrayList::new);
+
+    public void alsoPropagate(String... args) {
+        pending.get().add(args);
+    }
+
+    public List<String[]> drainPending() {
+        List<String[]> commands = pending.get();
+        if (commands.isEmpty()) {
+            return List.of();
+        }
+        List<String[]> drained = new ArrayList<>(commands);
+        commands.clear();
+        return drained;
+    }
+}
@@ -14,13 +14,23 @@ public class CommandRegistry {
     
 
     public boolean executeCommand(String command, String[] args, OutputStream out) throws IOException {
+        return executeCommand(command, args, out, null);
+    }
+    
+
+    /**
+     * Runs a command for a client connection. Without a BlockingContext
+     * (EXEC, the replication stream) blocking commands never park.
+     */
+    public boolean executeCommand(String command, String[] args, OutputStream out,
+                                  BlockingContext blocking) throws IOException {
         CommandHandler handler = handlers.get(command.toUpperCase());
         
         if (handler == null) {
             return false;
         }
         
-        handler.execute(args, out);
+        handler.execute(args, out, blocking);
         return true;
     }
     
@@ -1,12 +1,15 @@
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 
 public class ConfigGetCommandHandler extends BaseCommandHandler {
     private final RDBConfig rdbConfig;
+    private final KeyspaceNotifier keyspaceNotifier;
     
-    public ConfigGetCommandHandler(RDBConfig rdbConfig) {
+    public ConfigGetCommandHandler(RDBConfig rdbConfig, KeyspaceNotifier keyspaceNotifier) {
         this.rdbConfig = rdbConfig;
+        this.keyspaceNotifier = keyspaceNotifier;
     }
     
     @Override
@@ -17,6 +20,10 @@ public class ConfigGetCommandHandler extends BaseCommandHandler {
         }
         
         String subcommand = args[1].toUpperCase();
+        if (subcommand.equals("SET")) {
+            setConfigValue(args, out);
+            return;
+        }
         if (!subcommand.equals("GET")) {
             sendError(out, "ERR Unknown CONFIG subcommand '" + args[1] + "'");
             return;
@@ -39,29 +46,66 @@ public class ConfigGetCommandHandler extends BaseCommandHandler {
                 return rdbConfig.getDir();
             case "dbfilename":
                 return rdbConfig.getDbfilename();
+            case "list-max-listpack-size":
+                return String.valueOf(QuickList.listpackMaxEntries());
+            case "list-max-listpack-value":
+                return String.valueOf(QuickList.listpackMaxValue());
+            case "stream-hot-window-ms":
+                return String.valueOf(StreamSegments.hotWindowMs());
+            case "notify-keyspace-events":
+                return keyspaceNotifier.describe();
+            case "tracking-table-max-keys":
+                return String.valueOf(ClientTracking.maxKeys());
             default:
                 return null;
         }
     }
     
+    /**
+     * CONFIG SET, for the parameters that can change at runtime.
+     */
+    private void setConfigValue(String[] args, OutputStream out) throws IOException {
+        if (args.length != 4) {
+            sendError(out, "wrong number of arguments for 'config|set' command");
+            return;
+        }
+        
+        String parameter = args[2];
+        String value = args[3];
+        try {
+            switch (parameter.toLowerCase()) {
+                case "notify-keyspace-events":
+                    keyspaceNotifier.configure(value);
+                    break;
+                case "tracking-table-max-keys":
+                    ClientTracking.setMaxKeys(Long.parseLong(value));
+                    break;
+                default:
+                    sendError(out, "Unsupported CONFIG parameter: " + parameter);
+                    return;
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(out, "CONFIG SET failed (possibly related to argument '" + parameter + "') - " + e.getMessage());
+            return;
+        }
+        sendSimpleString(out, "OK");
+    }
+    
 
     private void sendConfigResponse(OutputStream out, String parameter, String value) throws IOException {
         StringBuilder response = new StringBuilder();
         
         response.append("*2\r\n");
         
-        response.append("$").append(parameter.length()).append("\r\n");
-        response.append(parameter).append("\r\n");
-        
-        response.append("$").append(value.length()).append("\r\n");
-        response.append(value).append("\r\n");
+        appendBulk(response, parameter);
+        appendBulk(response, value);
         
-        out.write(response.toString().getBytes());
+        out.write(response.toString().getBytes(StandardCharsets.UTF_8));
         out.flush();
     }
     
     private void sendEmptyArray(OutputStream out) throws IOException {
-        out.write("*0\r\n".getBytes());
+        out.write("*0\r\n".getBytes(StandardCharsets.UTF_8));
         out.flush();
     }
     
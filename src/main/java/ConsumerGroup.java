@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * State of one XGROUP consumer group: the last ID handed out to the group,
+ * its consumers, and the pending entries list (PEL) of entries delivered
+ * but not yet acknowledged.
+ *
+ * The PEL is indexed twice: by entry ID (group-wide and per consumer) so
+ * XACK / XCLAIM find an entry in O(log n), and by last delivery time so
+ * idle scans (XPENDING IDLE) start from the longest-idle entry and stop at
+ * the first one that is too recent.
+ *
+ * Not thread-safe: StreamStore guards every instance.
+ */
+public class ConsumerGroup {
+    private static final Comparator<PendingEntry> BY_DELIVERY_TIME =
+        Comparator.<PendingEntry>comparingLong(p -> p.deliveryTime).thenComparing(p -> p.id);
+
+    final String name;
+    long lastMs;
+    long lastSeq;
+    final TreeMap<EntryId, PendingEntry> pending = new TreeMap<>();
+    private final TreeSet<PendingEntry> byDeliveryTime = new TreeSet<>(BY_DELIVERY_TIME);
+    private final Map<String, Consumer> consumers = new LinkedHashMap<>();
+
+    ConsumerGroup(String name, long lastMs, long lastSeq) {
+        this.name = name;
+        this.lastMs = lastMs;
+        this.lastSeq = lastSeq;
+    }
+
+    String lastId() {
+        return lastMs + "-" + lastSeq;
+    }
+
+    Map<String, Consumer> consumers() {
+        return consumers;
+    }
+
+    /**
+     * Looks up a consumer, creating it on first use as XREADGROUP does.
+     */
+    Consumer consumer(String consumerName, long now) {
+        Consumer consumer = consumers.get(consumerName);
+        if (consumer == null) {
+            consumer = new Consumer(consumerName, now);
+            consumers.put(consumerName, consumer);
+        }
+        consumer.seenTime = now;
+        return consumer;
+    }
+
+    boolean createConsumer(String consumerName, long now) {
+        if (consumers.containsKey(consumerName)) {
+            return false;
+        }
+        consumers.put(consumerName, new Consumer(consumerName, now));
+        return true;
+    }
+
+    /**
+     * Removes a consumer and its pending entries. Returns how many entries
+     * it still had pending, or -1 if it did not exist.
+     */
+    long deleteConsumer(String consumerName) {
+        Consumer consumer = consumers.remove(consumerName);
+        if (consumer == null) {
+            return -1;
+        }
+        for (PendingEntry entry : consumer.pending.values()) {
+            pending.remove(entry.id);
+            byDeliveryTime.remove(entry);
+        }
+        return consumer.pending.size();
+    }
+
+    /**
+     * Records a first delivery of a new entry (XREADGROUP >) and advances
+     * the group's last-delivered ID.
+     */
+    void deliverNew(EntryId id, Consumer consumer, long now, boolean noAck) {
+        lastMs = id.getMillisecondsTime();
+        lastSeq = id.getSequenceNumber();
+        consumer.activeTime = now;
+        if (noAck) {
+            return;
+        }
+        PendingEntry entry = new PendingEntry(id, consumer, now, 1);
+        pending.put(id, entry);
+        consumer.pending.put(id, entry);
+        byDeliveryTime.add(entry);
+    }
+
+    /**
+     * Re-delivers an entry already pending for its consumer (XREADGROUP
+     * with an explicit ID).
+     */
+    void redeliver(PendingEntry entry, long now) {
+        setDeliveryTime(entry, now);
+        entry.deliveryCount++;
+    }
+
+    boolean ack(EntryId id) {
+        PendingEntry entry = pending.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        entry.consumer.pending.remove(id);
+        byDeliveryTime.remove(entry);
+        return true;
+    }
+
+    /**
+     * Hands a pending entry to another consumer (XCLAIM / XAUTOCLAIM), or
+     * creates it in the PEL when forced. The delivery time and count are
+     * set by the caller's options.
+     */
+    PendingEntry claim(EntryId id, Consumer to, long deliveryTime, long deliveryCount) {
+        PendingEntry entry = pending.get(id);
+        if (entry == null) {
+            entry = new PendingEntry(id, to, deliveryTime, deliveryCount);
+            pending.put(id, entry);
+            byDeliveryTime.add(entry);
+        } else {
+            entry.consumer.pending.remove(id);
+            entry.consumer = to;
+            setDeliveryTime(entry, deliveryTime);
+            entry.deliveryCount = deliveryCount;
+        }
+        to.pending.put(id, entry);
+        to.activeTime = deliveryTime;
+        return entry;
+    }
+
+    /**
+     * Pending entries idle for at least minIdleMs, longest idle first.
+     */
+    List<PendingEntry> idleAtLeast(long minIdleMs, long now) {
+        List<PendingEntry> result = new ArrayList<>();
+        for (PendingEntry entry : byDeliveryTime) {
+            if (now - entry.deliveryTime < minIdleMs) {
+                break;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    private void setDeliveryTime(PendingEntry entry, long time) {
+        byDeliveryTime.remove(entry);
+        entry.deliveryTime = time;
+        byDeliveryTime.add(entry);
+    }
+
+    static final class Consumer {
+        final String name;
+        long seenTime;    // last interaction of any kind
+        long activeTime;  // last successful read or claim
+        final TreeMap<EntryId, PendingEntry> pending = new TreeMap<>();
+
+        Consumer(String name, long now) {
+            this.name = name;
+            this.seenTime = now;
+            this.activeTime = -1;
+        }
+    }
+
+    static final class PendingEntry {
+        final EntryId id;
+        Consumer consumer;
+        long deliveryTime;
+        long deliveryCount;
+
+        PendingEntry(EntryId id, Consumer consumer, long deliveryTime, long deliveryCount) {
+            this.id = id;
+            this.consumer = consumer;
+            this.deliveryTime = deliveryTime;
+            this.deliveryCount = deliveryCount;
+        }
+    }
+}
+
+/**
+ * Error from a consumer group command that carries its own reply code,
+ * such as NOGROUP or BUSYGROUP, instead of the generic ERR.
+ */
+class StreamGroupException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    final String code;
+
+    StreamGroupException(String code, String message) {
+        super(message);
+        this.code = code;
+    }
+}
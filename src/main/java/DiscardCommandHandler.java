@@ -3,9 +3,11 @@ import java.io.OutputStream;
 
 public class DiscardCommandHandler extends BaseCommandHandler {
     private final TransactionContext transactionContext;
+    private final WatchedKeys watchedKeys;
     
-    public DiscardCommandHandler(TransactionContext transactionContext) {
+    public DiscardCommandHandler(TransactionContext transactionContext, WatchedKeys watchedKeys) {
         this.transactionContext = transactionContext;
+        this.watchedKeys = watchedKeys;
     }
     
     @Override
@@ -16,6 +18,7 @@ public class DiscardCommandHandler extends BaseCommandHandler {
         }
         
         transactionContext.endTransaction();
+        transactionContext.unwatchAll(watchedKeys);
         sendSimpleString(out, "OK");
     }
     
@@ -8,10 +8,20 @@ import java.util.List;
 public class ExecCommandHandler extends BaseCommandHandler {
     private final TransactionContext transactionContext;
     private final CommandRegistry commandRegistry;
+    private final WatchedKeys watchedKeys;
+    private final KeyLocks keyLocks;
+    private final ClientTracking clientTracking;
+    private final ClientTracking.Client trackingClient;
     
-    public ExecCommandHandler(TransactionContext transactionContext, CommandRegistry commandRegistry) {
+    public ExecCommandHandler(TransactionContext transactionContext, CommandRegistry commandRegistry,
+                              WatchedKeys watchedKeys, KeyLocks keyLocks,
+                              ClientTracking clientTracking, ClientTracking.Client trackingClient) {
         this.transactionContext = transactionContext;
         this.commandRegistry = commandRegistry;
+        this.watchedKeys = watchedKeys;
+        this.keyLocks = keyLocks;
+        this.clientTracking = clientTracking;
+        this.trackingClient = trackingClient;
     }
     
     @Override
@@ -23,38 +33,83 @@ public class ExecCommandHandler extends BaseCommandHandler {
         
         List<QueuedCommand> commands = transactionContext.getCommandQueue();
         
-        if (commands.isEmpty()) {
-            out.write("*0\r\n".getBytes(StandardCharsets.UTF_8));
+        // Lock everything the queue and the WATCHes touch, so no other
+        // client's command runs between the check and the last command
+        List<String> keys = new ArrayList<>();
+        boolean wholeKeyspace = false;
+        for (QueuedCommand cmd : commands) {
+            List<String> touched = KeyLocks.keysOf(cmd.command, cmd.args);
+            if (touched == null) {
+                wholeKeyspace = true;
+            } else {
+                keys.addAll(touched);
+            }
+        }
+        for (WatchedKeys.Watch watch : transactionContext.getWatches()) {
+            keys.add(watch.key);
+        }
+        
+        List<ByteArrayOutputStream> responses = null;
+        KeyLocks.Held held = keyLocks.lockExclusive(keys, wholeKeyspace);
+        try {
+            if (!isAnyWatchModified()) {
+                responses = run(commands);
+            }
+        } finally {
+            held.unlock();
+        }
+        
+        transactionContext.endTransaction();
+        transactionContext.unwatchAll(watchedKeys);
+        trackingClient.caching = null;  // used up by EXEC, like any command
+        
+        // A WATCHed key changed since WATCH: aborted with a null reply
+        if (responses == null) {
+            out.write("*-1\r\n".getBytes(StandardCharsets.UTF_8));
             out.flush();
-            transactionContext.endTransaction();
             return;
         }
         
+        // Send array of responses
+        out.write(("*" + responses.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        for (ByteArrayOutputStream response : responses) {
+            out.write(response.toByteArray());
+        }
+        out.flush();
+    }
+    
+    private boolean isAnyWatchModified() {
+        for (WatchedKeys.Watch watch : transactionContext.getWatches()) {
+            if (watchedKeys.isModified(watch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private List<ByteArrayOutputStream> run(List<QueuedCommand> commands) {
         List<ByteArrayOutputStream> responses = new ArrayList<>();
+        // As in Redis, CLIENT CACHING before EXEC covers every queued command
+        Boolean caching = trackingClient.caching;
         
         // Execute each queued command
         for (QueuedCommand cmd : commands) {
             ByteArrayOutputStream responseBuffer = new ByteArrayOutputStream();
             
+            trackingClient.caching = caching;
+            clientTracking.beforeCommand(trackingClient, cmd.command, cmd.args);
             try {
-                commandRegistry.executeCommand(cmd.command, cmd.args, responseBuffer);
+                // No BlockingContext: a blocking command inside EXEC never parks
+                commandRegistry.executeCommand(cmd.command, cmd.args, responseBuffer, null);
                 responses.add(responseBuffer);
             } catch (Exception e) {
                 ByteArrayOutputStream errorBuffer = new ByteArrayOutputStream();
                 String errorMsg = e.getMessage() != null ? e.getMessage() : "command failed";
-                errorBuffer.write(("-ERR " + errorMsg + "\r\n").getBytes(StandardCharsets.UTF_8));
+                errorBuffer.writeBytes(("-ERR " + errorMsg + "\r\n").getBytes(StandardCharsets.UTF_8));
                 responses.add(errorBuffer);
             }
         }
-        
-        // Send array of responses
-        out.write(("*" + responses.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
-        for (ByteArrayOutputStream response : responses) {
-            out.write(response.toByteArray());
-        }
-        out.flush();
-        
-        transactionContext.endTransaction();
+        return responses;
     }
     
     @Override
@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Redis-style glob compiled once for repeated matching: "*" matches any
+ * run of characters, "?" any single character, "[abc]", "[a-z]" and
+ * "[^...]" a character class, and "\" escapes the next character.
+ *
+ * The leading literal characters are split off as the prefix, so callers
+ * can index patterns by it (see PatternIndex) and only run the rest of the
+ * matcher on channels that already share that prefix. Matching backtracks
+ * only to the last "*" seen, so it is linear in practice and never
+ * exponential.
+ */
+public class GlobPattern {
+    private static final int LITERAL = 0;
+    private static final int ANY = 1;
+    private static final int STAR = 2;
+    private static final int CLASS = 3;
+
+    private final String pattern;
+    private final String prefix;
+    private final int[] types;      // tokens after the prefix
+    private final char[] literals;  // LITERAL character per token
+    private final char[][] ranges;  // CLASS ranges as [lo0, hi0, lo1, hi1, ...]
+    private final boolean[] negated;
+
+    public GlobPattern(String pattern) {
+        this.pattern = pattern;
+        List<Integer> typeList = new ArrayList<>();
+        StringBuilder literalList = new StringBuilder();
+        List<char[]> rangeList = new ArrayList<>();
+        List<Boolean> negatedList = new ArrayList<>();
+
+        int i = 0;
+        int n = pattern.length();
+        while (i < n) {
+            char c = pattern.charAt(i++);
+            int type;
+            char literal = 0;
+            char[] classRanges = null;
+            boolean negate = false;
+            if (c == '*') {
+                if (!typeList.isEmpty() && typeList.get(typeList.size() - 1) == STAR) {
+                    continue;  // "**" is the same as "*"
+                }
+                type = STAR;
+            } else if (c == '?') {
+                type = ANY;
+            } else if (c == '[') {
+                type = CLASS;
+                if (i < n && pattern.charAt(i) == '^') {
+                    negate = true;
+                    i++;
+                }
+                StringBuilder r = new StringBuilder();
+                while (i < n && pattern.charAt(i) != ']') {
+                    char lo = pattern.charAt(i++);
+                    if (lo == '\\' && i < n) {
+                        lo = pattern.charAt(i++);
+                    }
+                    char hi = lo;
+                    if (i + 1 < n && pattern.charAt(i) == '-' && pattern.charAt(i + 1) != ']') {
+                        hi = pattern.charAt(i + 1);
+                        i += 2;
+                        if (lo > hi) {
+                            char t = lo;
+                            lo = hi;
+                            hi = t;
+                        }
+                    }
+                    r.append(lo).append(hi);
+                }
+                i++;  // closing ']' (an unterminated class just ends the pattern)
+                classRanges = r.toString().toCharArray();
+            } else {
+                if (c == '\\' && i < n) {
+                    c = pattern.charAt(i++);
+                }
+                type = LITERAL;
+                literal = c;
+            }
+            typeList.add(type);
+            literalList.append(literal);
+            rangeList.add(classRanges);
+            negatedList.add(negate);
+        }
+
+        int p = 0;
+        StringBuilder prefixBuilder = new StringBuilder();
+        while (p < typeList.size() && typeList.get(p) == LITERAL) {
+            prefixBuilder.append(literalList.charAt(p++));
+        }
+        this.prefix = prefixBuilder.toString();
+        int rest = typeList.size() - p;
+        this.types = new int[rest];
+        this.literals = new char[rest];
+        this.ranges = new char[rest][];
+        this.negated = new boolean[rest];
+        for (int t = 0; t < rest; t++) {
+            types[t] = typeList.get(p + t);
+            literals[t] = literalList.charAt(p + t);
+            ranges[t] = rangeList.get(p + t);
+            negated[t] = negatedList.get(p + t);
+        }
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    /**
+     * The literal characters every match starts with.
+     */
+    public String prefix() {
+        return prefix;
+    }
+
+    public boolean matches(String s) {
+        return s.startsWith(prefix) && matchesAfterPrefix(s);
+    }
+
+    /**
+     * Matches s, which the caller knows starts with prefix().
+     */
+    boolean matchesAfterPrefix(String s) {
+        int n = s.length();
+        int si = prefix.length();
+        if (types.length == 0) {
+            return si == n;
+        }
+        if (types.length == 1 && types[0] == STAR) {
+            return true;  // "prefix*", the common case
+        }
+
+        int ti = 0;
+        int starToken = -1;
+        int starPos = 0;
+        while (si < n) {
+            if (ti < types.length && types[ti] != STAR && matchesToken(ti, s.charAt(si))) {
+                ti++;
+                si++;
+            } else if (ti < types.length && types[ti] == STAR) {
+                starToken = ti++;
+                starPos = si;
+            } else if (starToken >= 0) {
+                // Let the last "*" swallow one more character and retry
+                ti = starToken + 1;
+                si = ++starPos;
+            } else {
+                return false;
+            }
+        }
+        while (ti < types.length && types[ti] == STAR) {
+            ti++;
+        }
+        return ti == types.length;
+    }
+
+    private boolean matchesToken(int t, char c) {
+        switch (types[t]) {
+            case LITERAL:
+                return literals[t] == c;
+            case ANY:
+                return true;
+            default:
+                char[] r = ranges[t];
+                boolean in = false;
+                for (int k = 0; k < r.length && !in; k += 2) {
+                    in = c >= r[k] && c <= r[k + 1];
+                }
+                return in != negated[t];
+        }
+    }
+}
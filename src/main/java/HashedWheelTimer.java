@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shared deadline service for blocking commands (BLPOP family, XREAD BLOCK, WAIT).
+ *
+ * Timeouts hash into a wheel of 1ms buckets; a single worker thread visits
+ * one bucket per tick and fires the entries due in it at their exact
+ * deadline, so accuracy is bounded by parkNanos rather than the tick.
+ * Registration and cancellation are O(1). When no timeout is pending the
+ * worker parks indefinitely and costs no CPU.
+ */
+public class HashedWheelTimer {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int WHEEL_SIZE = 512;  // power of two
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+    private final Queue<Timeout> additions = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancellations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+
+    // Only touched by the worker thread
+    private long tick;
+
+    public HashedWheelTimer() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Bucket();
+        }
+        worker = new Thread(this::run, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Runs task on the timer thread once delay has elapsed. Tasks must be
+     * short: they run one after another on the single worker.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay));
+        additions.add(timeout);
+        if (pending.getAndIncrement() == 0) {
+            LockSupport.unpark(worker);  // worker may be parked idle
+        }
+        return timeout;
+    }
+
+    public int pendingTimeouts() {
+        return pending.get();
+    }
+
+    private void run() {
+        while (true) {
+            transferAdditions();
+            processCancellations();
+
+            if (pending.get() == 0) {
+                LockSupport.park(this);
+                // Skip the ticks we slept through; nothing was scheduled in them
+                tick = (System.nanoTime() - startNanos) / TICK_NANOS;
+                continue;
+            }
+
+            long tickEnd = startNanos + (tick + 1) * TICK_NANOS;
+            expireBucket(wheel[(int) (tick & WHEEL_MASK)]);
+            tick++;
+
+            long sleep = tickEnd - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+    }
+
+    private void transferAdditions() {
+        Timeout timeout;
+        while ((timeout = additions.poll()) != null) {
+            if (timeout.state.get() != Timeout.ST_INIT) {
+                continue;  // cancelled before it reached the wheel
+            }
+            long target = Math.max((timeout.deadline - startNanos) / TICK_NANOS, tick);
+            timeout.remainingRounds = (target - tick) / WHEEL_SIZE;
+            wheel[(int) (target & WHEEL_MASK)].add(timeout);
+        }
+    }
+
+    private void processCancellations() {
+        Timeout timeout;
+        while ((timeout = cancellations.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void expireBucket(Bucket bucket) {
+        List<Timeout> due = null;
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.state.get() != Timeout.ST_INIT) {
+                bucket.remove(timeout);
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                bucket.remove(timeout);
+                if (due == null) {
+                    due = new ArrayList<>();
+                }
+                due.add(timeout);
+            }
+            timeout = next;
+        }
+
+        if (due == null) {
+            return;
+        }
+        due.sort((a, b) -> Long.compare(a.deadline, b.deadline));
+        for (Timeout t : due) {
+            // Entries in this bucket are due within the current tick; wait out the remainder
+            long wait;
+            while ((wait = t.deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+            t.expire();
+        }
+    }
+
+    public static final class Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;  // System.nanoTime() based
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        // Worker-owned bucket bookkeeping
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout. Returns false if it already fired or was cancelled.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timer.cancellations.add(this);
+            if (timer.pending.decrementAndGet() == 0) {
+                LockSupport.unpark(timer.worker);  // let it unlink and go idle
+            }
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            timer.pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                System.err.println("Timer task failed: " + t.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Intrusive doubly-linked list so cancelled entries unlink in O(1).
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Key locks that make MULTI/EXEC isolated.
+ *
+ * Keys hash onto a fixed table of lock stripes. A plain command holds the
+ * stripes of its keys shared while it runs, so commands never wait for
+ * each other. EXEC holds the stripes of every key its queue touches, plus
+ * its WATCHed keys, exclusively from the WATCH check until the last
+ * queued command has run. Other clients touching those keys wait for it
+ * as a whole; transactions on other keys run alongside it. Only a
+ * transaction that touches the whole keyspace (KEYS) locks every stripe.
+ *
+ * Stripes are always acquired in ascending order, all before the command
+ * runs and before any store lock, so they cannot deadlock.
+ *
+ * Clients blocked on a key are served only after the command or EXEC that
+ * pushed to it has released its stripes. The serving thread then locks
+ * the served key, plus the destination of a BLMOVE, like a command of its
+ * own (see ListStore.serveBlocked and StreamStore.serveBlocked).
+ */
+public class KeyLocks {
+    private static final int STRIPES = 1024;
+    private static final int[] ALL_STRIPES = new int[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            ALL_STRIPES[i] = i;
+        }
+    }
+
+    private final StampedLock[] stripes = new StampedLock[STRIPES];
+
+    public KeyLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * Locks the keys of a command run outside a transaction.
+     */
+    public Held lockShared(String command, String[] args) {
+        List<String> keys = keysOf(command, args);
+        return keys == null ? lockShared(ALL_STRIPES) : lockShared(keys);
+    }
+
+    /**
+     * Locks the given keys shared, for work a command leaves to be done
+     * after it returns, such as serving blocked clients.
+     */
+    public Held lockShared(List<String> keys) {
+        return keys.isEmpty() ? Held.NONE : lockShared(stripesOf(keys));
+    }
+
+    private Held lockShared(int[] indexes) {
+        long[] stamps = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            stamps[i] = stripes[indexes[i]].readLock();
+        }
+        return new Held(this, indexes, stamps, false);
+    }
+
+    /**
+     * Locks keys for a transaction, or every stripe if wholeKeyspace.
+     */
+    public Held lockExclusive(List<String> keys, boolean wholeKeyspace) {
+        if (!wholeKeyspace && keys.isEmpty()) {
+            return Held.NONE;
+        }
+        int[] indexes = wholeKeyspace ? ALL_STRIPES : stripesOf(keys);
+        long[] stamps = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            stamps[i] = stripes[indexes[i]].writeLock();
+        }
+        return new Held(this, indexes, stamps, true);
+    }
+
+    /**
+     * Locks key shared without waiting, for the timer thread. Returns null
+     * while a transaction holds it.
+     */
+    public Held tryLockShared(String key) {
+        int index = stripeOf(key);
+        long stamp = stripes[index].tryReadLock();
+        if (stamp == 0) {
+            return null;
+        }
+        return new Held(this, new int[] {index}, new long[] {stamp}, false);
+    }
+
+    private static int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Stripe indexes of keys, ascending and without duplicates.
+     */
+    private static int[] stripesOf(List<String> keys) {
+        int[] indexes = new int[keys.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = stripeOf(keys.get(i));
+        }
+        if (indexes.length == 1) {
+            return indexes;
+        }
+        Arrays.sort(indexes);
+        int unique = 1;
+        for (int i = 1; i < indexes.length; i++) {
+            if (indexes[i] != indexes[unique - 1]) {
+                indexes[unique++] = indexes[i];
+            }
+        }
+        return unique == indexes.length ? indexes : Arrays.copyOf(indexes, unique);
+    }
+
+    /**
+     * Keys command reads or writes, or null if it scans the whole keyspace.
+     * Malformed arguments yield only the keys present; such commands fail
+     * without touching data.
+     */
+    static List<String> keysOf(String command, String[] args) {
+        switch (command) {
+            case "GET":
+            case "SET":
+            case "INCR":
+            case "TYPE":
+            case "RPUSH":
+            case "LPUSH":
+            case "RPUSHX":
+            case "LPUSHX":
+            case "LPOP":
+            case "RPOP":
+            case "LRANGE":
+            case "LLEN":
+            case "LINDEX":
+            case "LPOS":
+            case "LSET":
+            case "LINSERT":
+            case "LREM":
+            case "LTRIM":
+            case "XADD":
+            case "XRANGE":
+            case "XREVRANGE":
+            case "XLEN":
+            case "XTRIM":
+            case "XDEL":
+            case "XACK":
+            case "XPENDING":
+            case "XCLAIM":
+            case "XAUTOCLAIM":
+                return range(args, 1, 2);
+            case "OBJECT":
+            case "XINFO":
+            case "XGROUP":
+                return range(args, 2, 3);
+            case "LMOVE":
+            case "BLMOVE":
+            case "RPOPLPUSH":
+                return range(args, 1, 3);
+            case "EXISTS":
+                return range(args, 1, args.length);
+            case "BLPOP":
+            case "BRPOP":
+                return range(args, 1, args.length - 1);
+            case "LMPOP":
+                return numKeys(args, 1);
+            case "BLMPOP":
+                return numKeys(args, 2);
+            case "XREAD":
+            case "XREADGROUP":
+                return streamsKeys(args);
+            case "KEYS":
+                return null;
+            default:
+                return List.of();
+        }
+    }
+
+    private static List<String> range(String[] args, int from, int to) {
+        to = Math.min(to, args.length);
+        return from < to ? Arrays.asList(args).subList(from, to) : List.of();
+    }
+
+    private static List<String> numKeys(String[] args, int index) {
+        if (index >= args.length) {
+            return List.of();
+        }
+        try {
+            long count = Long.parseLong(args[index]);
+            return count > 0 ? range(args, index + 1, (int) Math.min(index + 1 + count, args.length)) : List.of();
+        } catch (NumberFormatException e) {
+            return List.of();
+        }
+    }
+
+    // XREAD / XREADGROUP ... STREAMS key [key ...] id [id ...]
+    private static List<String> streamsKeys(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("STREAMS")) {
+                return range(args, i + 1, i + 1 + (args.length - i - 1) / 2);
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Stripes held by one command or transaction.
+     */
+    public static final class Held {
+        static final Held NONE = new Held(null, new int[0], new long[0], false);
+
+        private final KeyLocks owner;
+        private final int[] indexes;
+        private final long[] stamps;
+        private final boolean exclusive;
+
+        private Held(KeyLocks owner, int[] indexes, long[] stamps, boolean exclusive) {
+            this.owner = owner;
+            this.indexes = indexes;
+            this.stamps = stamps;
+            this.exclusive = exclusive;
+        }
+
+        public void unlock() {
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                StampedLock lock = owner.stripes[indexes[i]];
+                if (exclusive) {
+                    lock.unlockWrite(stamps[i]);
+                } else {
+                    lock.unlockRead(stamps[i]);
+                }
+            }
+        }
+    }
+}
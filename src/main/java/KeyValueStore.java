@@ -1,11 +1,21 @@
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class KeyValueStore {
+    // Longest wait between retries of an expiry held up by a transaction
+    private static final long MAX_EXPIRY_RETRY_MS = 64;
+
     private final ConcurrentHashMap<String, ValueWithExpiry> store;
+    private final HashedWheelTimer timer;
+    private final KeyspaceNotifier notifier;
+    private final KeyLocks keyLocks;
 
 
-    public KeyValueStore() {
+    public KeyValueStore(HashedWheelTimer timer, KeyspaceNotifier notifier, KeyLocks keyLocks) {
         store = new ConcurrentHashMap<>();
+        this.timer = timer;
+        this.notifier = notifier;
+        this.keyLocks = keyLocks;
     }
 
     public void set(String key, String value, long expiryMillis) {
@@ -16,14 +26,34 @@ public class KeyValueStore {
         } else {
             expiryTime = now + expiryMillis;
         }
-        store.put(key, new ValueWithExpiry(value, expiryTime));
+        ValueWithExpiry entry = new ValueWithExpiry(value, expiryTime);
+        ValueWithExpiry previous = store.put(key, entry);
+        if (previous != null) {
+            cancelExpiry(previous);
+        }
+        if (notifier.isEnabled(KeyspaceNotifier.NEW) && (previous == null || previous.isExpired())) {
+            notifier.notify(KeyspaceNotifier.NEW, "new", key);
+        }
+        notifier.notify(KeyspaceNotifier.STRING, "set", key);
+        if (expiryTime != Long.MAX_VALUE) {
+            notifier.notify(KeyspaceNotifier.GENERIC, "expire", key);
+            // Expire it on time even if nobody reads it again, so "expired"
+            // is published when it happens rather than on the next access
+            entry.timeout = timer.newTimeout(() -> expireOnTime(key, 1),
+                Math.max(expiryTime - now + 1, 0), TimeUnit.MILLISECONDS);
+            // A SET racing with this one may have replaced entry before its
+            // timeout was assigned, and so could not cancel it
+            if (store.get(key) != entry) {
+                cancelExpiry(entry);
+            }
+        }
     }
 
     public String get(String key) {
         ValueWithExpiry v = store.get(key);
         if (v == null) return null;
         if (v.isExpired()) {
-            store.remove(key);
+            expire(key, v);
             return null;
         }
         return v.getValue();
@@ -32,14 +62,15 @@ public class KeyValueStore {
     public synchronized long increment(String key) {
         ValueWithExpiry v = store.get(key);
         
-        if (v == null) {
-            store.put(key, new ValueWithExpiry("1", Long.MAX_VALUE));
-            return 1;
+        if (v != null && v.isExpired()) {
+            expire(key, v);
+            v = null;
         }
         
-        if (v.isExpired()) {
-            store.remove(key);
+        if (v == null) {
             store.put(key, new ValueWithExpiry("1", Long.MAX_VALUE));
+            notifier.notify(KeyspaceNotifier.NEW, "new", key);
+            notifier.notify(KeyspaceNotifier.STRING, "incrby", key);
             return 1;
         }
         
@@ -55,7 +86,10 @@ public class KeyValueStore {
             
             long newValue = numValue + 1;
             
-            store.put(key, new ValueWithExpiry(Long.toString(newValue), currentExpiry));
+            ValueWithExpiry next = new ValueWithExpiry(Long.toString(newValue), currentExpiry);
+            next.timeout = v.timeout;
+            store.put(key, next);
+            notifier.notify(KeyspaceNotifier.STRING, "incrby", key);
             
             return newValue;
         } catch (NumberFormatException e) {
@@ -67,7 +101,7 @@ public class KeyValueStore {
         ValueWithExpiry v = store.get(key);
         if (v == null) return false;
         if (v.isExpired()) {
-            store.remove(key);
+            expire(key, v);
             return false;
         }
         return true;
@@ -84,4 +118,51 @@ public class KeyValueStore {
         
         return keys;
     }
+
+    /**
+     * Timer side of a TTL. A transaction holding the key finishes first:
+     * the timer thread must not wait, so it retries later, backing off up
+     * to MAX_EXPIRY_RETRY_MS while the transaction runs.
+     */
+    private void expireOnTime(String key, long retryMs) {
+        ValueWithExpiry entry = store.get(key);
+        if (entry == null || !entry.isExpired()) {
+            return;
+        }
+        KeyLocks.Held held = keyLocks.tryLockShared(key);
+        if (held == null) {
+            long next = Math.min(retryMs * 2, MAX_EXPIRY_RETRY_MS);
+            entry.timeout = timer.newTimeout(() -> expireOnTime(key, next), retryMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+        try {
+            if (entry.isExpired()) {
+                expire(key, entry);
+            }
+        } finally {
+            held.unlock();
+        }
+    }
+
+    /**
+     * Drops a key found expired on access. Only the caller that actually
+     * removes it reports the "expired" event.
+     */
+    private void expire(String key, ValueWithExpiry v) {
+        if (store.remove(key, v)) {
+            cancelExpiry(v);
+            notifier.notify(KeyspaceNotifier.EXPIRED, "expired", key);
+        }
+    }
+
+    /**
+     * Drops the timer of an entry that is gone, so overwritten TTL keys
+     * don't leave timeouts behind on the wheel.
+     */
+    private static void cancelExpiry(ValueWithExpiry v) {
+        HashedWheelTimer.Timeout timeout = v.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+/**
+ * Keyspace notifications (notify-keyspace-events). Stores report each
+ * change as an event class plus an event name, and enabled events are
+ * published through PubSubManager on "__keyspace@0__:<key>" (message: the
+ * event) and/or "__keyevent@0__:<event>" (message: the key).
+ *
+ * Every event except "new" also marks the key modified: it bumps the
+ * key's WATCH version and invalidates it for CLIENT TRACKING.
+ *
+ * The configuration is one volatile int, so with notifications off (the
+ * default), no WATCH and no client tracking an event costs three field
+ * reads and three branches; no channel name is built and the registry is never touched.
+ */
+public class KeyspaceNotifier {
+    static final int KEYSPACE = 1;     // K
+    static final int KEYEVENT = 1 << 1;  // E
+    static final int GENERIC = 1 << 2;   // g: del, expire, ...
+    static final int STRING = 1 << 3;    // $
+    static final int LIST = 1 << 4;      // l
+    static final int SET = 1 << 5;       // s
+    static final int HASH = 1 << 6;      // h
+    static final int ZSET = 1 << 7;      // z
+    static final int EXPIRED = 1 << 8;   // x
+    static final int EVICTED = 1 << 9;   // e
+    static final int STREAM = 1 << 10;   // t
+    static final int KEY_MISS = 1 << 11; // m
+    static final int MODULE = 1 << 12;   // d
+    static final int NEW = 1 << 13;      // n
+
+    // "A": every class except key-miss and new-key events, as in Redis
+    private static final int ALL = GENERIC | STRING | LIST | SET | HASH | ZSET | EXPIRED | EVICTED | STREAM | MODULE;
+
+    private static final String CLASS_CHARS = "g$lshzxetmdn";
+    private static final int[] CLASS_FLAGS = {
+        GENERIC, STRING, LIST, SET, HASH, ZSET, EXPIRED, EVICTED, STREAM, KEY_MISS, MODULE, NEW
+    };
+
+    private final PubSubManager pubSubManager;
+    private final ClientTracking clientTracking;
+    private final WatchedKeys watchedKeys;
+    private volatile int flags;
+
+    public KeyspaceNotifier(PubSubManager pubSubManager, ClientTracking clientTracking, WatchedKeys watchedKeys) {
+        this.pubSubManager = pubSubManager;
+        this.clientTracking = clientTracking;
+        this.watchedKeys = watchedKeys;
+    }
+
+    /**
+     * Publishes event for key if its class is enabled, bumps its WATCH
+     * version and invalidates it for tracking clients.
+     */
+    public void notify(int type, String event, String key) {
+        if (type != NEW) {
+            watchedKeys.touch(key);
+            if (clientTracking.isActive()) {
+                clientTracking.invalidate(key);
+            }
+        }
+        int enabled = flags;
+        if ((enabled & type) == 0) {
+            return;
+        }
+        if ((enabled & KEYSPACE) != 0) {
+            pubSubManager.publish("__keyspace@0__:" + key, event);
+        }
+        if ((enabled & KEYEVENT) != 0) {
+            pubSubManager.publish("__keyevent@0__:" + event, key);
+        }
+    }
+
+    /**
+     * Whether any event of the given class would be published, for callers
+     * that need extra work just to tell an event happened.
+     */
+    public boolean isEnabled(int type) {
+        return (flags & type) != 0;
+    }
+
+    /**
+     * Applies a notify-keyspace-events string such as "KEA" or "Elx". An
+     * empty string turns notifications off, and so, in effect, does a
+     * string with neither K nor E.
+     */
+    public void configure(String spec) {
+        int parsed = 0;
+        for (int i = 0; i < spec.length(); i++) {
+            char c = spec.charAt(i);
+            if (c == 'A') {
+                parsed |= ALL;
+            } else if (c == 'K') {
+                parsed |= KEYSPACE;
+            } else if (c == 'E') {
+                parsed |= KEYEVENT;
+            } else {
+                int index = CLASS_CHARS.indexOf(c);
+                if (index < 0) {
+                    throw new IllegalArgumentException("Invalid event class character '" + c + "'");
+                }
+                parsed |= CLASS_FLAGS[index];
+            }
+        }
+        flags = parsed;
+    }
+
+    /**
+     * The current setting in canonical form, as CONFIG GET reports it.
+     */
+    public String describe() {
+        int current = flags;
+        StringBuilder sb = new StringBuilder();
+        if ((current & ALL) == ALL) {
+            sb.append('A');
+            current &= ~ALL;
+        }
+        for (int i = 0; i < CLASS_FLAGS.length; i++) {
+            if ((current & CLASS_FLAGS[i]) != 0) {
+                sb.append(CLASS_CHARS.charAt(i));
+            }
+        }
+        if ((current & KEYSPACE) != 0) {
+            sb.append('K');
+        }
+        if ((current & KEYEVENT) != 0) {
+            sb.append('E');
+        }
+        return sb.toString();
+    }
+}
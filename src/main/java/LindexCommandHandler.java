@@ -0,0 +1,43 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class LindexCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public LindexCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 3) {
+            sendError(out, "LINDEX requires key and index");
+            return;
+        }
+        
+        String key = args[1];
+        
+        try {
+            int index = Integer.parseInt(args[2]);
+            String value = listStore.lindex(key, index);
+            
+            if (value == null) {
+                sendNullBulkString(out);
+            } else {
+                sendBulkString(out, value);
+            }
+        } catch (NumberFormatException e) {
+            sendError(out, "value is not an integer or out of range");
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "LINDEX";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; // LINDEX only reads data
+    }
+}
@@ -0,0 +1,41 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * LINSERT key BEFORE|AFTER pivot element
+ */
+public class LinsertCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public LinsertCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 5) {
+            sendError(out, "LINSERT requires key, BEFORE|AFTER, pivot, and element");
+            return;
+        }
+        
+        String key = args[1];
+        String where = args[2].toUpperCase();
+        if (!where.equals("BEFORE") && !where.equals("AFTER")) {
+            sendError(out, "syntax error");
+            return;
+        }
+        
+        int length = listStore.linsert(key, args[3], args[4], where.equals("AFTER"));
+        sendInteger(out, length);
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "LINSERT";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // LINSERT modifies data
+    }
+}
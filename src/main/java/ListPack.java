@@ -0,0 +1,221 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact encoding for small lists: every element lives in one contiguous
+ * byte array instead of separate String objects.
+ *
+ * Each entry is laid out as [len][utf-8 bytes][backlen], where len and
+ * backlen use one byte below 128 and two bytes up to MAX_VALUE_BYTES. The
+ * trailing backlen lets pollLast walk backwards without an index. Entries
+ * occupy buf[begin, end); slack on both sides keeps pushes at either end
+ * amortized O(1).
+ *
+ * QuickList converts to linked nodes once a list outgrows the configured
+ * listpack limits, so operations here may be O(n) in the (small) entry count.
+ */
+public class ListPack {
+    static final int MAX_VALUE_BYTES = (1 << 14) - 1;
+    private static final int INITIAL_CAPACITY = 32;
+
+    private byte[] buf;
+    private int begin;
+    private int end;
+    private int count;
+
+    public ListPack() {
+        buf = new byte[INITIAL_CAPACITY];
+        begin = INITIAL_CAPACITY / 2;
+        end = begin;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Total bytes used by the encoded entries.
+     */
+    public int bytes() {
+        return end - begin;
+    }
+
+    public void addFirst(String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        int entry = entrySize(data.length);
+        if (begin < entry) {
+            grow(entry, true);
+        }
+        begin -= entry;
+        writeEntry(begin, data);
+        count++;
+    }
+
+    public void addLast(String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        int entry = entrySize(data.length);
+        if (buf.length - end < entry) {
+            grow(entry, false);
+        }
+        writeEntry(end, data);
+        end += entry;
+        count++;
+    }
+
+    public String pollFirst() {
+        if (count == 0) {
+            return null;
+        }
+        int len = readLen(begin);
+        int hdr = headerSize(len);
+        String value = new String(buf, begin + hdr, len, StandardCharsets.UTF_8);
+        begin += hdr + len + hdr;
+        count--;
+        recenterIfEmpty();
+        return value;
+    }
+
+    public String pollLast() {
+        if (count == 0) {
+            return null;
+        }
+        int len = readBackLen(end);
+        int hdr = headerSize(len);
+        int entryStart = end - hdr - len - hdr;
+        String value = new String(buf, entryStart + hdr, len, StandardCharsets.UTF_8);
+        end = entryStart;
+        count--;
+        recenterIfEmpty();
+        return value;
+    }
+
+    public String get(int index) {
+        int pos = offsetOf(index);
+        int len = readLen(pos);
+        return new String(buf, pos + headerSize(len), len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes every entry, in order.
+     */
+    public String[] toArray() {
+        String[] values = new String[count];
+        int pos = begin;
+        for (int i = 0; i < count; i++) {
+            int len = readLen(pos);
+            int hdr = headerSize(len);
+            values[i] = new String(buf, pos + hdr, len, StandardCharsets.UTF_8);
+            pos += hdr + len + hdr;
+        }
+        return values;
+    }
+
+    /**
+     * Re-encodes the pack from values, used after in-place edits
+     * (LSET, LINSERT, LREM, LTRIM) that are rare on small lists.
+     */
+    public void reset(List<String> values) {
+        buf = new byte[INITIAL_CAPACITY];
+        begin = INITIAL_CAPACITY / 2;
+        end = begin;
+        count = 0;
+        for (String value : values) {
+            addLast(value);
+        }
+    }
+
+    public List<String> toList() {
+        return new ArrayList<>(Arrays.asList(toArray()));
+    }
+
+    /**
+     * Byte offset of the entry at index, walking from the nearer end.
+     */
+    private int offsetOf(int index) {
+        if (index < count / 2) {
+            int pos = begin;
+            for (int i = 0; i < index; i++) {
+                int len = readLen(pos);
+                pos += 2 * headerSize(len) + len;
+            }
+            return pos;
+        }
+        int pos = end;
+        for (int i = count; i > index; i--) {
+            int len = readBackLen(pos);
+            pos -= 2 * headerSize(len) + len;
+        }
+        return pos;
+    }
+
+    private void recenterIfEmpty() {
+        if (count == 0) {
+            begin = buf.length / 2;
+            end = begin;
+        }
+    }
+
+    /**
+     * Reallocates with room for at least `needed` more bytes on the growing
+     * side, keeping half the new slack on each side.
+     */
+    private void grow(int needed, boolean atFront) {
+        int used = end - begin;
+        int capacity = Math.max(buf.length * 2, used + needed * 2 + INITIAL_CAPACITY);
+        byte[] next = new byte[capacity];
+        int newBegin = (capacity - used) / 2;
+        if (atFront && newBegin < needed) {
+            newBegin = needed;
+        }
+        System.arraycopy(buf, begin, next, newBegin, used);
+        buf = next;
+        begin = newBegin;
+        end = newBegin + used;
+    }
+
+    private void writeEntry(int pos, byte[] data) {
+        int len = data.length;
+        if (len < 128) {
+            buf[pos++] = (byte) len;
+            System.arraycopy(data, 0, buf, pos, len);
+            pos += len;
+            buf[pos] = (byte) len;
+        } else {
+            buf[pos++] = (byte) (0x80 | (len >>> 7));
+            buf[pos++] = (byte) (len & 0x7F);
+            System.arraycopy(data, 0, buf, pos, len);
+            pos += len;
+            buf[pos++] = (byte) (len & 0x7F);
+            buf[pos] = (byte) (0x80 | (len >>> 7));
+        }
+    }
+
+    private int readLen(int pos) {
+        int b0 = buf[pos] & 0xFF;
+        if ((b0 & 0x80) == 0) {
+            return b0;
+        }
+        return ((b0 & 0x7F) << 7) | (buf[pos + 1] & 0x7F);
+    }
+
+    /**
+     * Reads the backlen of the entry that ends just before pos.
+     */
+    private int readBackLen(int pos) {
+        int last = buf[pos - 1] & 0xFF;
+        if ((last & 0x80) == 0) {
+            return last;
+        }
+        return ((last & 0x7F) << 7) | (buf[pos - 2] & 0x7F);
+    }
+
+    private static int headerSize(int len) {
+        return len < 128 ? 1 : 2;
+    }
+
+    private static int entrySize(int len) {
+        return 2 * headerSize(len) + len;
+    }
+}
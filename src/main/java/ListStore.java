@@ -1,214 +1,745 @@
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 public class ListStore {
+    // Number of lock stripes; keys hash onto a stripe so unrelated lists don't contend
+    private static final int LOCK_STRIPES = 256;
 
-    private final ConcurrentHashMap<String, List<String>> lists = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, QuickList> lists = new ConcurrentHashMap<>();
     private final Map<String, Queue<BlockedClient>> blockedClients = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Keys that got elements while clients were blocked on them, kept per
+    // thread until serveBlocked runs after the command that pushed them
+    private final ThreadLocal<Deque<String>> readyKeys = ThreadLocal.withInitial(ArrayDeque::new);
+    private final HashedWheelTimer timer;
+    private final KeyspaceNotifier notifier;
+    private final KeyLocks keyLocks;
+
+    public ListStore(HashedWheelTimer timer, KeyspaceNotifier notifier, KeyLocks keyLocks) {
+        this.timer = timer;
+        this.notifier = notifier;
+        this.keyLocks = keyLocks;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
 
-    public synchronized WakeUpResult rpush(String key, String value) {
-        Queue<BlockedClient> queue = blockedClients.get(key);
-        long now = System.currentTimeMillis();
+    private int stripeOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Returns the monitor guarding the given key. All reads and writes of a
+     * list, and of the clients blocked on it, happen under this monitor.
+     * When two stripes are needed they are always taken lowest index first.
+     */
+    private Object lockFor(String key) {
+        return locks[stripeOf(key)];
+    }
 
-        if (queue != null) {
-            while (!queue.isEmpty()) {
-                BlockedClient client = queue.poll();
-                if (client.expireAt <= now) {
-                    continue;
+    public PushResult rpush(String key, String[] values) {
+        return push(key, values, false, false);
+    }
+
+    public PushResult lpush(String key, String[] values) {
+        return push(key, values, true, false);
+    }
+
+    /**
+     * Pushes all values onto a list under a single lock acquisition. Clients
+     * blocked on it are served by serveBlocked once the command is over.
+     * The returned length is the length right after the push, as in Redis.
+     * With onlyIfExists (RPUSHX/LPUSHX) a missing key is left alone and the
+     * length is 0.
+     */
+    public PushResult push(String key, String[] values, boolean left, boolean onlyIfExists) {
+        int length;
+
+        synchronized (lockFor(key)) {
+            if (onlyIfExists && !lists.containsKey(key)) {
+                return new PushResult(0);
+            }
+            QuickList list = listForPush(key);
+            for (String value : values) {
+                if (left) {
+                    list.addFirst(value);
+                } else {
+                    list.addLast(value);
                 }
-                return new WakeUpResult(client, value);
             }
+            length = list.size();
+            notifier.notify(KeyspaceNotifier.LIST, left ? "lpush" : "rpush", key);
+            signalReady(key);
         }
+        return new PushResult(length);
+    }
 
-        List<String> list = lists.computeIfAbsent(key, k -> new ArrayList<>());
-        list.add(value);
-        return null;
+    /**
+     * Returns the requested range as shared node segments. Only node
+     * references are collected under the lock (O(n / node size)); the caller
+     * reads the elements after the lock is released.
+     */
+    public List<QuickList.Segment> lrange(String key, int start, int stop) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+
+            if (list == null) {
+                return List.of();
+            }
+
+            int size = list.size();
+
+            if (start < 0) {
+                start = size + start;
+            }
+            if (stop < 0) {
+                stop = size + stop;
+            }
+
+            if (start < 0) start = 0;
+            if (stop < 0) stop = 0;
+
+            if (start >= size || start > stop) {
+                return List.of();
+            }
+
+            stop = Math.min(stop, size - 1);
+
+            return list.share(start, stop);
+        }
     }
 
-    public synchronized WakeUpResult lpush(String key, String value) {
-        Queue<BlockedClient> queue = blockedClients.get(key);
-        long now = System.currentTimeMillis();
+    /**
+     * Returns the element at index (negative counts from the tail), or null.
+     */
+    public String lindex(String key, int index) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+            if (list == null) {
+                return null;
+            }
+            if (index < 0) {
+                index = list.size() + index;
+            }
+            return list.get(index);
+        }
+    }
 
-        if (queue != null) {
-            while (!queue.isEmpty()) {
-                BlockedClient client = queue.poll();
-                if (client.expireAt <= now) {
-                    continue;
-                }
-                return new WakeUpResult(client, value);
+    public void lset(String key, int index, String value) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+            if (list == null) {
+                throw new IllegalArgumentException("no such key");
+            }
+            if (index < 0) {
+                index = list.size() + index;
+            }
+            if (index < 0 || index >= list.size()) {
+                throw new IllegalArgumentException("index out of range");
             }
+            list.set(index, value);
+            notifier.notify(KeyspaceNotifier.LIST, "lset", key);
         }
+    }
 
-        List<String> list = lists.computeIfAbsent(key, k -> new ArrayList<>());
-        list.add(0, value);
-        return null;
+    /**
+     * Returns the new length, -1 if pivot was not found, 0 if the key is missing.
+     */
+    public int linsert(String key, String pivot, String value, boolean after) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+            if (list == null) {
+                return 0;
+            }
+            if (!list.insert(pivot, value, after)) {
+                return -1;
+            }
+            notifier.notify(KeyspaceNotifier.LIST, "linsert", key);
+            return list.size();
+        }
     }
 
-    public synchronized List<String> lrange(String key, int start, int stop) {
-        List<String> list = lists.get(key);
+    public int lrem(String key, int count, String value) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+            if (list == null) {
+                return 0;
+            }
+            int removed = list.removeOccurrences(value, count);
+            if (removed > 0) {
+                notifier.notify(KeyspaceNotifier.LIST, "lrem", key);
+            }
+            removeIfEmpty(key, list);
+            return removed;
+        }
+    }
 
-        if (list == null) {
-            return List.of();
+    public void ltrim(String key, int start, int stop) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+            if (list == null) {
+                return;
+            }
+
+            int size = list.size();
+            if (start < 0) start = size + start;
+            if (stop < 0) stop = size + stop;
+            if (start < 0) start = 0;
+            stop = Math.min(stop, size - 1);
+
+            list.trim(start, stop);
+            notifier.notify(KeyspaceNotifier.LIST, "ltrim", key);
+            removeIfEmpty(key, list);
         }
+    }
 
-        int size = list.size();
+    public List<Integer> lpos(String key, String value, int rank, int count, int maxlen) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+            if (list == null) {
+                return List.of();
+            }
+            return list.positions(value, rank, count, maxlen);
+        }
+    }
 
-        if (start < 0) {
-            start = size + start;
+    /**
+     * Internal representation for OBJECT ENCODING, or null if the key is absent.
+     */
+    public String encoding(String key) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+            return list == null ? null : list.encoding();
         }
-        if (stop < 0) {
-            stop = size + stop;
+    }
+
+    public int llen(String key) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+            return list == null ? 0 : list.size();
         }
+    }
 
-        if (start < 0) start = 0;
-        if (stop < 0) stop = 0;
+    public String lpop(String key) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
 
-        if (start >= size || start > stop) {
-            return List.of();
+            if (list == null || list.isEmpty()) {
+                return null;
+            }
+
+            String value = list.pollFirst();
+            notifier.notify(KeyspaceNotifier.LIST, "lpop", key);
+            removeIfEmpty(key, list);
+
+            return value;
         }
+    }
+
+    public List<String> lpop(String key, int count) {
+        synchronized (lockFor(key)) {
+            List<String> result = new ArrayList<>();
+            QuickList list = lists.get(key);
+
+            if (list == null || list.isEmpty() || count <= 0) {
+                return result;
+            }
+
+            int actualCount = Math.min(count, list.size());
 
-        stop = Math.min(stop, size - 1);
+            for (int i = 0; i < actualCount; i++) {
+                result.add(list.pollFirst());
+            }
+            notifier.notify(KeyspaceNotifier.LIST, "lpop", key);
+            removeIfEmpty(key, list);
 
-        List<String> result = new ArrayList<>();
-        for (int i = start; i <= stop; i++) {
-            result.add(list.get(i));
+            return result;
         }
+    }
 
-        return result;
+    public String rpop(String key) {
+        synchronized (lockFor(key)) {
+            QuickList list = lists.get(key);
+
+            if (list == null || list.isEmpty()) {
+                return null;
+            }
+
+            String value = list.pollLast();
+            notifier.notify(KeyspaceNotifier.LIST, "rpop", key);
+            removeIfEmpty(key, list);
+
+            return value;
+        }
     }
 
-    public synchronized int llen(String key) {
-        List<String> list = lists.get(key);
-        return list == null ? 0 : list.size();
+    public List<String> rpop(String key, int count) {
+        synchronized (lockFor(key)) {
+            List<String> result = new ArrayList<>();
+            QuickList list = lists.get(key);
+
+            if (list == null || list.isEmpty() || count <= 0) {
+                return result;
+            }
+
+            int actualCount = Math.min(count, list.size());
+
+            for (int i = 0; i < actualCount; i++) {
+                result.add(list.pollLast());
+            }
+            notifier.notify(KeyspaceNotifier.LIST, "rpop", key);
+            removeIfEmpty(key, list);
+
+            return result;
+        }
     }
 
-    public synchronized String lpop(String key) {
-        List<String> list = lists.get(key);
+    /**
+     * Pops up to count elements from the first non-empty list among keys.
+     * Returns null when every list is empty.
+     */
+    public PopResult popFirstNonEmpty(String[] keys, boolean left, int count) {
+        for (String key : keys) {
+            List<String> values = left ? lpop(key, count) : rpop(key, count);
+            if (!values.isEmpty()) {
+                return new PopResult(key, values);
+            }
+        }
+        return null;
+    }
 
-        if (list == null || list.isEmpty()) {
-            return null;
+    /**
+     * Atomically pops from source and pushes onto destination (LMOVE,
+     * RPOPLPUSH, BLMOVE) in one critical section holding both stripes, so no
+     * other client can observe the element in neither or both lists. When
+     * source equals destination this rotates the list. Clients blocked on
+     * destination are served by serveBlocked once the command is over.
+     * Returns null when source is empty.
+     */
+    public PopResult move(String source, String destination, boolean fromLeft, boolean toLeft) {
+        String value;
+
+        int a = stripeOf(source);
+        int b = stripeOf(destination);
+        synchronized (locks[Math.min(a, b)]) {
+            synchronized (locks[Math.max(a, b)]) {
+                QuickList src = lists.get(source);
+                if (src == null || src.isEmpty()) {
+                    return null;
+                }
+                value = fromLeft ? src.pollFirst() : src.pollLast();
+                notifier.notify(KeyspaceNotifier.LIST, fromLeft ? "lpop" : "rpop", source);
+                removeIfEmpty(source, src);
+
+                QuickList dst = listForPush(destination);
+                if (toLeft) {
+                    dst.addFirst(value);
+                } else {
+                    dst.addLast(value);
+                }
+                notifier.notify(KeyspaceNotifier.LIST, toLeft ? "lpush" : "rpush", destination);
+                signalReady(destination);
+            }
         }
+        return new PopResult(source, List.of(value));
+    }
 
-        String value = list.remove(0);
+    /**
+     * Parks a client on all of its keys. Nothing holds a thread while it
+     * waits: the client is answered by whichever push serves it, or by the
+     * timer when its deadline passes. A timeout of 0 blocks forever.
+     *
+     * An element may have been pushed between the caller's non-blocking
+     * attempt and registration, so the keys are also signalled ready for
+     * the serveBlocked that follows the command.
+     */
+    public void block(BlockedClient client, long timeoutMs) {
+        client.store = this;
+        // Armed first, so a push serving the client mid-registration cancels it
+        if (timeoutMs > 0) {
+            client.timeout = timer.newTimeout(() -> expire(client), timeoutMs, TimeUnit.MILLISECONDS);
+        }
 
-        if (list.isEmpty()) {
-            lists.remove(key);
+        for (String key : client.keys) {
+            synchronized (lockFor(key)) {
+                blockedClients.computeIfAbsent(key, k -> new ArrayDeque<>()).add(client);
+            }
         }
 
-        return value;
+        // Served or timed out before the last key was registered: whoever
+        // finished it may have unregistered it before those keys were added
+        if (client.isFinished()) {
+            unregister(client);
+            if (client.timeout != null) {
+                client.timeout.cancel();
+            }
+            return;
+        }
+        readyKeys.get().addAll(Arrays.asList(client.keys));
     }
 
-    public synchronized List<String> lpop(String key, int count) {
-        List<String> result = new ArrayList<>();
-        List<String> list = lists.get(key);
+    /**
+     * Serves the clients blocked on keys this thread's last command (or
+     * EXEC) pushed to, sending their replies and queueing the equivalent
+     * pops on propagator. Must be called once the command has released its
+     * KeyLocks: as in Redis, blocked clients are served after the command
+     * rather than in the middle of it, so a transaction never sees them
+     * take elements.
+     */
+    public void serveBlocked(CommandPropagator propagator) {
+        Deque<String> ready = readyKeys.get();
+        while (!ready.isEmpty()) {
+            List<WakeUpResult> wakeUps = new ArrayList<>();
+            serveReady(ready.poll(), wakeUps);
+            releaseServed(wakeUps);
+            // An undeliverable pop is pushed back, making its key ready again
+            for (WakeUpResult wakeUp : wakeUps) {
+                wakeUp.deliver(propagator);
+            }
+        }
+    }
 
-        if (list == null || list.isEmpty() || count <= 0) {
-            return result;
+    /**
+     * Returns elements a served client could not receive to the end they
+     * were popped from, holding the key's KeyLocks stripe like a command.
+     */
+    void pushBack(String key, String[] values, boolean left) {
+        KeyLocks.Held held = keyLocks.lockShared(List.of(key));
+        try {
+            push(key, values, left, false);
+        } finally {
+            held.unlock();
         }
+    }
 
-        int actualCount = Math.min(count, list.size());
+    /**
+     * Remembers that key gained elements, if anyone is blocked on it.
+     * Caller holds the key's stripe.
+     */
+    private void signalReady(String key) {
+        if (blockedClients.containsKey(key)) {
+            readyKeys.get().add(key);
+        }
+    }
 
-        for (int i = 0; i < actualCount; i++) {
-            result.add(list.remove(0));
+    private void expire(BlockedClient client) {
+        if (!client.finish()) {
+            return;  // already served by a push
         }
+        unregister(client);
+        client.deliverTimeout();
+    }
 
-        if (list.isEmpty()) {
-            lists.remove(key);
+    void unregister(BlockedClient client) {
+        for (String key : client.keys) {
+            synchronized (lockFor(key)) {
+                Queue<BlockedClient> queue = blockedClients.get(key);
+                if (queue != null) {
+                    queue.remove(client);
+                    if (queue.isEmpty()) {
+                        blockedClients.remove(key);
+                    }
+                }
+            }
         }
+    }
 
-        return result;
+    /**
+     * Served clients may still sit in the queues of their other keys; drop
+     * them there and cancel their deadlines.
+     */
+    private void releaseServed(List<WakeUpResult> wakeUps) {
+        for (WakeUpResult wakeUp : wakeUps) {
+            BlockedClient client = wakeUp.client;
+            if (client.timeout != null) {
+                client.timeout.cancel();
+            }
+            if (client.keys.length > 1) {
+                unregister(client);
+            }
+        }
     }
 
-    public synchronized String rpop(String key) {
-        List<String> list = lists.get(key);
+    /**
+     * Serves clients blocked on key while its list has elements. Must be
+     * called holding key's locks and, if not null, destination's. A BLMOVE
+     * to any other list stops the pass (preserving FIFO) and signals the
+     * key again, to be served with that destination locked.
+     */
+    private void serveLocked(String key, String destination, List<WakeUpResult> wakeUps) {
+        Queue<BlockedClient> queue = blockedClients.get(key);
+        QuickList list = lists.get(key);
 
-        if (list == null || list.isEmpty()) {
-            return null;
-        }
+        while (queue != null && !queue.isEmpty() && list != null && !list.isEmpty()) {
+            BlockedClient client = queue.peek();
+            if (client.isFinished()) {
+                queue.poll();
+                continue;
+            }
 
-        String value = list.remove(list.size() - 1);
+            if (client.destination != null && !client.destination.equals(key)
+                    && !client.destination.equals(destination)) {
+                readyKeys.get().add(key);
+                break;
+            }
 
-        if (list.isEmpty()) {
-            lists.remove(key);
+            queue.poll();
+            if (!client.finish()) {
+                continue;  // timed out concurrently
+            }
+
+            int count = Math.min(client.count, list.size());
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(client.popLeft ? list.pollFirst() : list.pollLast());
+            }
+            notifier.notify(KeyspaceNotifier.LIST, client.popLeft ? "lpop" : "rpop", key);
+
+            if (client.destination != null) {
+                QuickList dst = listForPush(client.destination);
+                if (client.pushLeft) {
+                    dst.addFirst(values.get(0));
+                } else {
+                    dst.addLast(values.get(0));
+                }
+                notifier.notify(KeyspaceNotifier.LIST, client.pushLeft ? "lpush" : "rpush", client.destination);
+                if (!client.destination.equals(key)) {
+                    signalReady(client.destination);
+                }
+            }
+
+            wakeUps.add(new WakeUpResult(client, key, values));
         }
 
-        return value;
+        if (queue != null && queue.isEmpty()) {
+            blockedClients.remove(key);
+        }
+        if (list != null) {
+            removeIfEmpty(key, list);
+        }
     }
 
-    public synchronized List<String> rpop(String key, int count) {
-        List<String> result = new ArrayList<>();
-        List<String> list = lists.get(key);
-
-        if (list == null || list.isEmpty() || count <= 0) {
-            return result;
+    /**
+     * Serves a ready key. Its KeyLocks stripe and, for a BLMOVE at the head
+     * of its queue, the destination's are taken first, in ascending order
+     * as for any command, then the same two store stripes.
+     */
+    private void serveReady(String key, List<WakeUpResult> wakeUps) {
+        String destination;
+        synchronized (lockFor(key)) {
+            Queue<BlockedClient> queue = blockedClients.get(key);
+            if (queue == null || queue.isEmpty() || !lists.containsKey(key)) {
+                return;
+            }
+            destination = queue.peek().destination;
         }
 
-        int actualCount = Math.min(count, list.size());
+        List<String> keys = destination == null || destination.equals(key)
+                ? List.of(key) : List.of(key, destination);
+        KeyLocks.Held held = keyLocks.lockShared(keys);
+        try {
+            int a = stripeOf(key);
+            int b = destination != null ? stripeOf(destination) : a;
+            synchronized (locks[Math.min(a, b)]) {
+                synchronized (locks[Math.max(a, b)]) {
+                    serveLocked(key, destination, wakeUps);
+                }
+            }
+        } finally {
+            held.unlock();
+        }
+    }
 
-        for (int i = 0; i < actualCount; i++) {
-            result.add(list.remove(list.size() - 1));
+    /**
+     * The list at key, created (and reported as a new key) if missing.
+     * Caller holds the key's stripe.
+     */
+    private QuickList listForPush(String key) {
+        QuickList list = lists.get(key);
+        if (list == null) {
+            list = new QuickList();
+            lists.put(key, list);
+            notifier.notify(KeyspaceNotifier.NEW, "new", key);
         }
+        return list;
+    }
 
+    /**
+     * Deletes a list that an operation emptied, which Redis reports as "del".
+     * Caller holds the key's stripe.
+     */
+    private void removeIfEmpty(String key, QuickList list) {
         if (list.isEmpty()) {
             lists.remove(key);
+            notifier.notify(KeyspaceNotifier.GENERIC, "del", key);
         }
-
-        return result;
     }
 
-    public synchronized boolean exists(String key) {
+    public boolean exists(String key) {
         return lists.containsKey(key);
     }
 
-    public synchronized List<BlockedClient> collectExpiredBlockedClients() {
-        long now = System.currentTimeMillis();
-        List<BlockedClient> expired = new ArrayList<>();
+    public List<String> getAllKeys() {
+        return new ArrayList<>(lists.keySet());
+    }
+}
 
-        for (Queue<BlockedClient> queue : blockedClients.values()) {
-            while (!queue.isEmpty() && queue.peek().expireAt <= now) {
-                expired.add(queue.poll());
+/**
+ * A client parked by BLPOP, BRPOP, BLMPOP or BLMOVE. It sits in the waiter
+ * queue of every key it watches; whoever calls finish() first (a push or
+ * the timer) owns the reply.
+ */
+class BlockedClient extends ParkedClient {
+    final String command;
+    final String[] keys;
+    final OutputStream out;
+    final boolean popLeft;
+    final int count;           // elements to pop when served
+    final String destination;  // BLMOVE target list, null otherwise
+    final boolean pushLeft;
+    ListStore store;  // set when parked
+
+    BlockedClient(String command, String[] keys, OutputStream out, boolean popLeft, int count,
+                  String destination, boolean pushLeft) {
+        this.command = command;
+        this.keys = keys;
+        this.out = out;
+        this.popLeft = popLeft;
+        this.count = count;
+        this.destination = destination;
+        this.pushLeft = pushLeft;
+    }
+
+    @Override
+    void unregister() {
+        store.unregister(this);
+    }
+
+    /**
+     * Sends the reply; false if the connection is gone.
+     */
+    boolean deliver(String key, List<String> values) {
+        StringBuilder reply = new StringBuilder();
+        if (command.equals("BLMOVE")) {
+            BaseCommandHandler.appendBulk(reply, values.get(0));
+        } else if (command.equals("BLMPOP")) {
+            reply.append("*2\r\n");
+            BaseCommandHandler.appendBulk(reply, key);
+            reply.append("*").append(values.size()).append("\r\n");
+            for (String value : values) {
+                BaseCommandHandler.appendBulk(reply, value);
             }
+        } else {
+            reply.append("*2\r\n");
+            BaseCommandHandler.appendBulk(reply, key);
+            BaseCommandHandler.appendBulk(reply, values.get(0));
         }
-        return expired;
+        return write(reply.toString());
     }
-    
-    public synchronized void blockClient(String key, OutputStream out, long timeoutMs) {
-        long expireAt = System.currentTimeMillis() + timeoutMs;
 
-        blockedClients
-            .computeIfAbsent(key, k -> new ArrayDeque<>())
-            .add(new BlockedClient(key, out, expireAt));
+    void deliverTimeout() {
+        write(command.equals("BLMOVE") ? "$-1\r\n" : "*-1\r\n");
     }
-    
 
-    public synchronized List<String> getAllKeys() {
-        return new ArrayList<>(lists.keySet());
+    /**
+     * The non-blocking commands equivalent to how this client was served,
+     * so replicas apply the same pops.
+     */
+    List<String[]> propagationFor(String key, List<String> values) {
+        if (destination != null) {
+            return List.<String[]>of(new String[] {
+                "LMOVE", key, destination, popLeft ? "LEFT" : "RIGHT", pushLeft ? "LEFT" : "RIGHT" });
+        }
+        String pop = popLeft ? "LPOP" : "RPOP";
+        if (command.equals("BLMPOP")) {
+            return List.<String[]>of(new String[] { pop, key, String.valueOf(values.size()) });
+        }
+        return List.<String[]>of(new String[] { pop, key });
     }
-}
 
-class BlockedClient {
-    String key;
-    OutputStream out;
-    long expireAt;
-
-    BlockedClient(String key, OutputStream out, long expireAt) {
-        this.key = key;
-        this.out = out;
-        this.expireAt = expireAt;
+    private boolean write(String reply) {
+        try {
+            synchronized (out) {
+                out.write(reply.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            answered();
+        }
     }
 }
 
 class WakeUpResult {
     final BlockedClient client;
-    final String value;
+    final String key;
+    final List<String> values;
 
-    WakeUpResult(BlockedClient client, String value) {
+    WakeUpResult(BlockedClient client, String key, List<String> values) {
         this.client = client;
-        this.value = value;
+        this.key = key;
+        this.values = values;
+    }
+
+    /**
+     * Sends the blocked client its reply and queues the equivalent pops for
+     * replication on the calling thread.
+     *
+     * If the client's connection is gone, popped elements are pushed back
+     * onto the end they came from, in their original order, and may serve
+     * the next waiter in the same serveBlocked. A BLMOVE element stays in
+     * its destination list.
+     */
+    void deliver(CommandPropagator propagator) {
+        boolean delivered = client.deliver(key, values);
+        for (String[] args : client.propagationFor(key, values)) {
+            propagator.alsoPropagate(args);
+        }
+        if (delivered || client.destination != null) {
+            return;
+        }
+
+        String[] back = new String[values.size()];
+        for (int i = 0; i < back.length; i++) {
+            back[i] = values.get(back.length - 1 - i);
+        }
+        client.store.pushBack(key, back, client.popLeft);
+        String[] push = new String[back.length + 2];
+        push[0] = client.popLeft ? "LPUSH" : "RPUSH";
+        push[1] = key;
+        System.arraycopy(back, 0, push, 2, back.length);
+        propagator.alsoPropagate(push);
     }
-}
\ No newline at end of file
+}
+
+class PushResult {
+    final int length;
+
+    PushResult(int length) {
+        this.length = length;
+    }
+}
+
+class PopResult {
+    final String key;
+    final List<String> values;
+
+    PopResult(String key, List<String> values) {
+        this.key = key;
+        this.values = values;
+    }
+}
@@ -0,0 +1,49 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * LMOVE source destination LEFT|RIGHT LEFT|RIGHT
+ */
+public class LmoveCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public LmoveCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 5) {
+            sendError(out, "wrong number of arguments for 'lmove' command");
+            return;
+        }
+        
+        String whereFrom = args[3].toUpperCase();
+        String whereTo = args[4].toUpperCase();
+        if (!isSide(whereFrom) || !isSide(whereTo)) {
+            sendError(out, "syntax error");
+            return;
+        }
+        
+        PopResult moved = listStore.move(args[1], args[2], whereFrom.equals("LEFT"), whereTo.equals("LEFT"));
+        if (moved == null) {
+            sendNullBulkString(out);
+            return;
+        }
+        sendBulkString(out, moved.values.get(0));
+    }
+    
+    private boolean isSide(String where) {
+        return where.equals("LEFT") || where.equals("RIGHT");
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "LMOVE";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // LMOVE modifies data
+    }
+}
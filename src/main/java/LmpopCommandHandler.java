@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * LMPOP numkeys key [key ...] LEFT|RIGHT [COUNT count]
+ */
+public class LmpopCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public LmpopCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 4) {
+            sendError(out, "wrong number of arguments for 'lmpop' command");
+            return;
+        }
+        
+        int numKeys;
+        try {
+            numKeys = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            sendError(out, "numkeys should be greater than 0");
+            return;
+        }
+        if (numKeys <= 0 || args.length < 3 + numKeys) {
+            sendError(out, "numkeys should be greater than 0");
+            return;
+        }
+        
+        String[] keys = Arrays.copyOfRange(args, 2, 2 + numKeys);
+        String where = args[2 + numKeys].toUpperCase();
+        if (!where.equals("LEFT") && !where.equals("RIGHT")) {
+            sendError(out, "syntax error");
+            return;
+        }
+        
+        int count = 1;
+        int optIdx = 3 + numKeys;
+        if (optIdx < args.length) {
+            if (optIdx + 1 >= args.length || !args[optIdx].equalsIgnoreCase("COUNT")) {
+                sendError(out, "syntax error");
+                return;
+            }
+            try {
+                count = Integer.parseInt(args[optIdx + 1]);
+            } catch (NumberFormatException e) {
+                count = 0;
+            }
+            if (count <= 0) {
+                sendError(out, "count should be greater than 0");
+                return;
+            }
+        }
+        
+        PopResult popped = listStore.popFirstNonEmpty(keys, where.equals("LEFT"), count);
+        if (popped == null) {
+            out.write("*-1\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            return;
+        }
+        
+        StringBuilder reply = new StringBuilder("*2\r\n");
+        appendBulk(reply, popped.key);
+        reply.append("*").append(popped.values.size()).append("\r\n");
+        for (String value : popped.values) {
+            appendBulk(reply, value);
+        }
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "LMPOP";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // LMPOP modifies data
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * LPOS key element [RANK rank] [COUNT num-matches] [MAXLEN len]
+ */
+public class LposCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public LposCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 3 || args.length % 2 == 0) {
+            sendError(out, "wrong number of arguments for 'lpos' command");
+            return;
+        }
+        
+        String key = args[1];
+        String element = args[2];
+        int rank = 1;
+        int count = 1;
+        boolean withCount = false;
+        int maxlen = 0;
+        
+        try {
+            for (int i = 3; i < args.length; i += 2) {
+                String option = args[i].toUpperCase();
+                int value = Integer.parseInt(args[i + 1]);
+                
+                if (option.equals("RANK")) {
+                    if (value == 0) {
+                        sendError(out, "RANK can't be zero: use 1 to start from the first match, 2 from the second ... or use negative to start from the end of the list");
+                        return;
+                    }
+                    rank = value;
+                } else if (option.equals("COUNT")) {
+                    if (value < 0) {
+                        sendError(out, "COUNT can't be negative");
+                        return;
+                    }
+                    count = value;
+                    withCount = true;
+                } else if (option.equals("MAXLEN")) {
+                    if (value < 0) {
+                        sendError(out, "MAXLEN can't be negative");
+                        return;
+                    }
+                    maxlen = value;
+                } else {
+                    sendError(out, "syntax error");
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            sendError(out, "value is not an integer or out of range");
+            return;
+        }
+        
+        List<Integer> positions = listStore.lpos(key, element, rank, count, maxlen);
+        
+        if (withCount) {
+            StringBuilder response = new StringBuilder();
+            response.append("*").append(positions.size()).append("\r\n");
+            for (int position : positions) {
+                response.append(":").append(position).append("\r\n");
+            }
+            out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } else if (positions.isEmpty()) {
+            sendNullBulkString(out);
+        } else {
+            sendInteger(out, positions.get(0));
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "LPOS";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; // LPOS only reads data
+    }
+}
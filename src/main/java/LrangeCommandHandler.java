@@ -1,8 +1,13 @@
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class LrangeCommandHandler extends BaseCommandHandler {
+    // Replies are encoded into a buffer of this size and written in chunks
+    private static final int REPLY_CHUNK_BYTES = 16 * 1024;
+    
     private final ListStore listStore;
     
     public LrangeCommandHandler(ListStore listStore) {
@@ -22,13 +27,41 @@ public class LrangeCommandHandler extends BaseCommandHandler {
             int start = Integer.parseInt(args[2]);
             int stop = Integer.parseInt(args[3]);
             
-            List<String> values = listStore.lrange(key, start, stop);
-            sendArray(out, values);
+            List<QuickList.Segment> segments = listStore.lrange(key, start, stop);
+            sendSegments(out, segments);
         } catch (NumberFormatException e) {
             sendError(out, "start and stop must be numbers");
         }
     }
     
+    /**
+     * Streams the range straight from the list's nodes into the socket,
+     * REPLY_CHUNK_BYTES at a time, with no intermediate list of elements.
+     */
+    private void sendSegments(OutputStream out, List<QuickList.Segment> segments) throws IOException {
+        int count = 0;
+        for (QuickList.Segment segment : segments) {
+            count += segment.size();
+        }
+        
+        BufferedOutputStream reply = new BufferedOutputStream(out, REPLY_CHUNK_BYTES);
+        reply.write(("*" + count + "\r\n").getBytes(StandardCharsets.UTF_8));
+        
+        for (QuickList.Segment segment : segments) {
+            for (int i = segment.from; i < segment.to; i++) {
+                byte[] value = segment.items[i].getBytes(StandardCharsets.UTF_8);
+                reply.write('$');
+                reply.write(Integer.toString(value.length).getBytes(StandardCharsets.UTF_8));
+                reply.write('\r');
+                reply.write('\n');
+                reply.write(value);
+                reply.write('\r');
+                reply.write('\n');
+            }
+        }
+        reply.flush();
+    }
+    
     @Override
     public String getCommandName() {
         return "LRANGE";
@@ -38,4 +71,4 @@ public class LrangeCommandHandler extends BaseCommandHandler {
     public boolean isWriteCommand() {
         return false; // LRANGE only reads data
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class LremCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public LremCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 4) {
+            sendError(out, "LREM requires key, count, and element");
+            return;
+        }
+        
+        String key = args[1];
+        
+        try {
+            int count = Integer.parseInt(args[2]);
+            int removed = listStore.lrem(key, count, args[3]);
+            sendInteger(out, removed);
+        } catch (NumberFormatException e) {
+            sendError(out, "value is not an integer or out of range");
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "LREM";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // LREM modifies data
+    }
+}
@@ -0,0 +1,41 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class LsetCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public LsetCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 4) {
+            sendError(out, "LSET requires key, index, and value");
+            return;
+        }
+        
+        String key = args[1];
+        String value = args[3];
+        
+        try {
+            int index = Integer.parseInt(args[2]);
+            listStore.lset(key, index, value);
+            sendSimpleString(out, "OK");
+        } catch (NumberFormatException e) {
+            sendError(out, "value is not an integer or out of range");
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "LSET";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // LSET modifies data
+    }
+}
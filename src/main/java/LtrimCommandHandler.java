@@ -0,0 +1,40 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class LtrimCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public LtrimCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 4) {
+            sendError(out, "LTRIM requires key, start, and stop");
+            return;
+        }
+        
+        String key = args[1];
+        
+        try {
+            int start = Integer.parseInt(args[2]);
+            int stop = Integer.parseInt(args[3]);
+            
+            listStore.ltrim(key, start, stop);
+            sendSimpleString(out, "OK");
+        } catch (NumberFormatException e) {
+            sendError(out, "start and stop must be numbers");
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "LTRIM";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // LTRIM modifies data
+    }
+}
@@ -8,9 +8,28 @@ import java.util.List;
 
 public class Main {
 
-    private static final KeyValueStore keyValueStore = new KeyValueStore();
-    private static final ListStore listStore = new ListStore();
-    private static final StreamStore streamStore = new StreamStore();
+    // Shared deadline service for all blocking commands; idle when nobody is blocked
+    private static final HashedWheelTimer timer = new HashedWheelTimer();
+    
+    // Global pub/sub manager (tracks all channel subscriptions)
+    private static final PubSubManager pubSubManager = new PubSubManager();
+    
+    // CLIENT TRACKING: client IDs, tracked keys and invalidation
+    private static final ClientTracking clientTracking = new ClientTracking();
+    
+    // Modification versions of WATCHed keys
+    private static final WatchedKeys watchedKeys = new WatchedKeys();
+    
+    // notify-keyspace-events; the stores report every change through it
+    private static final KeyspaceNotifier keyspaceNotifier =
+        new KeyspaceNotifier(pubSubManager, clientTracking, watchedKeys);
+    
+    // Key locks that keep EXEC isolated from other clients
+    private static final KeyLocks keyLocks = new KeyLocks();
+    
+    private static final KeyValueStore keyValueStore = new KeyValueStore(timer, keyspaceNotifier, keyLocks);
+    private static final ListStore listStore = new ListStore(timer, keyspaceNotifier, keyLocks);
+    private static final StreamStore streamStore = new StreamStore(timer, keyspaceNotifier, keyLocks);
     
     // Store connected replicas for command propagation
     private static final List<OutputStream> connectedReplicas = new ArrayList<>();
@@ -18,8 +37,8 @@ public class Main {
     // Track replication state for WAIT command
     private static final ReplicationTracker replicationTracker = new ReplicationTracker();
     
-    // Global pub/sub manager (tracks all channel subscriptions)
-    private static final PubSubManager pubSubManager = new PubSubManager();
+    // Extra commands to replicate after the current one (e.g. a served BLPOP becomes LPOP)
+    private static final CommandPropagator commandPropagator = new CommandPropagator();
     
     // Command registry
     private static CommandRegistry commandRegistry;
@@ -57,6 +76,7 @@ public class Main {
     
     public static void main(String[] args) throws IOException {
         int port = 6379;
+        long streamHotWindowMs = 0;
         
         // Parse command line arguments
         for (int i = 0; i < args.length; i++) {
@@ -93,8 +113,46 @@ public class Main {
                 rdbConfig.setDbfilename(args[i + 1]);
                 System.out.println("RDB filename: " + rdbConfig.getDbfilename());
             }
+            else if (args[i].equals("--list-max-listpack-size") && i + 1 < args.length) {
+                try {
+                    QuickList.setListpackLimits(Integer.parseInt(args[i + 1]), QuickList.listpackMaxValue());
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid list-max-listpack-size: " + args[i + 1]);
+                }
+            }
+            else if (args[i].equals("--list-max-listpack-value") && i + 1 < args.length) {
+                try {
+                    QuickList.setListpackLimits(QuickList.listpackMaxEntries(), Integer.parseInt(args[i + 1]));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid list-max-listpack-value: " + args[i + 1]);
+                }
+            }
+            else if (args[i].equals("--stream-hot-window-ms") && i + 1 < args.length) {
+                try {
+                    streamHotWindowMs = Long.parseLong(args[i + 1]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid stream-hot-window-ms: " + args[i + 1]);
+                }
+            }
+            else if (args[i].equals("--tracking-table-max-keys") && i + 1 < args.length) {
+                try {
+                    ClientTracking.setMaxKeys(Long.parseLong(args[i + 1]));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid tracking-table-max-keys: " + args[i + 1]);
+                }
+            }
+            else if (args[i].equals("--notify-keyspace-events") && i + 1 < args.length) {
+                try {
+                    keyspaceNotifier.configure(args[i + 1]);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Invalid notify-keyspace-events: " + args[i + 1]);
+                }
+            }
         }
         
+        // Older stream nodes spill to segment files next to the RDB file (0 = never)
+        StreamSegments.configure(rdbConfig.getDir(), streamHotWindowMs);
+        
         System.out.println("Server role: " + serverRole);
         
         // Initialize command registry
@@ -102,9 +160,6 @@ public class Main {
         
         RDBParser.loadRDB(rdbConfig.getFullPath(), keyValueStore);
         
-        // Start expiry thread for blocked clients
-        startExpiryThread();
-        
         // Start server
         ServerSocket serverSocket = new ServerSocket(port);
         System.out.println("Redis-like server running on port " + port);
@@ -141,6 +196,7 @@ public class Main {
         commandRegistry.register(new IncrCommandHandler(keyValueStore)); // WRITE
         commandRegistry.register(new ExistsCommandHandler(keyValueStore, listStore, streamStore)); // READ
         commandRegistry.register(new TypeCommandHandler(keyValueStore, listStore, streamStore));   // READ
+        commandRegistry.register(new ObjectCommandHandler(keyValueStore, listStore, streamStore)); // READ
         
         // Register list commands
         commandRegistry.register(new RpushCommandHandler(listStore));  // WRITE
@@ -149,11 +205,41 @@ public class Main {
         commandRegistry.register(new RpopCommandHandler(listStore));   // WRITE
         commandRegistry.register(new LrangeCommandHandler(listStore)); // READ
         commandRegistry.register(new LlenCommandHandler(listStore));   // READ
+        commandRegistry.register(new RpushxCommandHandler(listStore));  // WRITE
+        commandRegistry.register(new LpushxCommandHandler(listStore));  // WRITE
+        commandRegistry.register(new LindexCommandHandler(listStore));  // READ
+        commandRegistry.register(new LposCommandHandler(listStore));    // READ
+        commandRegistry.register(new LsetCommandHandler(listStore));    // WRITE
+        commandRegistry.register(new LinsertCommandHandler(listStore)); // WRITE
+        commandRegistry.register(new LremCommandHandler(listStore));    // WRITE
+        commandRegistry.register(new LtrimCommandHandler(listStore));   // WRITE
+        commandRegistry.register(new LmpopCommandHandler(listStore));   // WRITE
+        commandRegistry.register(new LmoveCommandHandler(listStore));      // WRITE
+        commandRegistry.register(new RpoplpushCommandHandler(listStore));  // WRITE
+        
+        // Register blocking list commands (replicated as the pops they turn into)
+        commandRegistry.register(new BlpopCommandHandler(listStore, commandPropagator));
+        commandRegistry.register(new BrpopCommandHandler(listStore, commandPropagator));
+        commandRegistry.register(new BlmpopCommandHandler(listStore, commandPropagator));
+        commandRegistry.register(new BlmoveCommandHandler(listStore, commandPropagator));
         
         // Register stream commands
         commandRegistry.register(new XaddCommandHandler(streamStore));   // WRITE
         commandRegistry.register(new XrangeCommandHandler(streamStore)); // READ
+        commandRegistry.register(new XrevrangeCommandHandler(streamStore)); // READ
         commandRegistry.register(new XreadCommandHandler(streamStore));  // READ
+        commandRegistry.register(new XlenCommandHandler(streamStore));   // READ
+        commandRegistry.register(new XinfoCommandHandler(streamStore));  // READ
+        commandRegistry.register(new XtrimCommandHandler(streamStore));  // WRITE
+        commandRegistry.register(new XdelCommandHandler(streamStore));   // WRITE
+        
+        // Register consumer group commands (reads that deliver are replicated as XCLAIM)
+        commandRegistry.register(new XgroupCommandHandler(streamStore));    // WRITE
+        commandRegistry.register(new XreadgroupCommandHandler(streamStore, commandPropagator));
+        commandRegistry.register(new XackCommandHandler(streamStore));      // WRITE
+        commandRegistry.register(new XpendingCommandHandler(streamStore));  // READ
+        commandRegistry.register(new XclaimCommandHandler(streamStore, commandPropagator));
+        commandRegistry.register(new XautoclaimCommandHandler(streamStore, commandPropagator));
         
         // Register transaction commands (Special handling - see handleClient)
         // Note: We can't pass transactionContext here as it's thread-local
@@ -164,31 +250,40 @@ public class Main {
         commandRegistry.register(new PsyncCommandHandler(MASTER_REPLID, EMPTY_RDB_FILE, connectedReplicas));
         
         // Register WAIT command (used to check replica acknowledgments)
-        commandRegistry.register(new WaitCommandHandler(connectedReplicas, replicationTracker));
+        commandRegistry.register(new WaitCommandHandler(connectedReplicas, replicationTracker, timer));
         
         // Register RDB-related commands
-        commandRegistry.register(new ConfigGetCommandHandler(rdbConfig));
+        commandRegistry.register(new ConfigGetCommandHandler(rdbConfig, keyspaceNotifier));
         commandRegistry.register(new KeysCommandHandler(keyValueStore, listStore, streamStore));
         
         // Register pub/sub commands
-        commandRegistry.register(new PublishCommandHandler(pubSubManager));
+        commandRegistry.register(new PublishCommandHandler(pubSubManager, commandPropagator));
+        commandRegistry.register(new SpublishCommandHandler(pubSubManager, commandPropagator));
+        commandRegistry.register(new PubsubCommandHandler(pubSubManager));
+        
+        // UNWATCH queued inside MULTI; outside a transaction handleClient runs it
+        commandRegistry.register(new UnwatchCommandHandler(null, watchedKeys));
         
         // Note: SUBSCRIBE and PING are handled specially in handleClient due to pub/sub context
     }
 
     private static void handleClient(Socket client) {
-        try (
-            InputStream in = client.getInputStream();
+        PubSubContext psContext = null;
+        ClientTracking.Client trackingClient = null;
+        BlockingContext blockingContext = null;
+        try {
+            PushbackInputStream in = new PushbackInputStream(client.getInputStream());
             OutputStream out = client.getOutputStream();
-        ) {
             BufferedReader reader = new BufferedReader(
                     new InputStreamReader(in, StandardCharsets.UTF_8)
             );
+            blockingContext = new BlockingContext(client, in);
             
             TransactionContext txContext = transactionContext.get();
             
             // Create PubSubContext with OutputStream for this client
-            PubSubContext psContext = new PubSubContext(pubSubManager, out);
+            psContext = new PubSubContext(pubSubManager, out);
+            trackingClient = clientTracking.register(psContext.getQueue());
 
             while (true) {
                 String line = reader.readLine();
@@ -214,43 +309,119 @@ public class Main {
                 
                 String command = args[0].toUpperCase();
                 
-                // Check if in subscribed mode and command is not allowed
-                if (psContext.isSubscribed() && !isAllowedInSubscribedMode(command)) {
-                    sendError(out, "Can't execute '" + command.toLowerCase() + 
-                        "': only (P|S)SUBSCRIBE / (P|S)UNSUBSCRIBE / PING / QUIT / RESET are allowed in this context");
+                // Pub/sub replies share the socket with queued messages written
+                // by SubscriberQueue, so they are sent under the same monitor
+                if (psContext.isSubscribed() || isAllowedInSubscribedMode(command)) {
+                    synchronized (out) {
+                        // Check if in subscribed mode and command is not allowed
+                        if (psContext.isSubscribed() && !isAllowedInSubscribedMode(command)) {
+                            sendError(out, "Can't execute '" + command.toLowerCase() + 
+                                "': only (P|S)SUBSCRIBE / (P|S)UNSUBSCRIBE / PING / QUIT / RESET are allowed in this context");
+                            continue;
+                        }
+                        
+                        // Handle SUBSCRIBE command (needs pub/sub context)
+                        if (command.equals("SUBSCRIBE")) {
+                            SubscribeCommandHandler subscribeHandler = new SubscribeCommandHandler(psContext);
+                            subscribeHandler.execute(args, out);
+                            continue;
+                        }
+                        
+                        if (command.equals("UNSUBSCRIBE")) {
+                            UnsubscribeCommandHandler unsubscribeHandler = new UnsubscribeCommandHandler(psContext);
+                            unsubscribeHandler.execute(args, out);
+                            continue;
+                        }
+                        
+                        // Pattern subscriptions (same pub/sub context)
+                        if (command.equals("PSUBSCRIBE")) {
+                            PsubscribeCommandHandler psubscribeHandler = new PsubscribeCommandHandler(psContext);
+                            psubscribeHandler.execute(args, out);
+                            continue;
+                        }
+                        
+                        if (command.equals("PUNSUBSCRIBE")) {
+                            PunsubscribeCommandHandler punsubscribeHandler = new PunsubscribeCommandHandler(psContext);
+                            punsubscribeHandler.execute(args, out);
+                            continue;
+                        }
+                        
+                        // Shard channel subscriptions (same pub/sub context)
+                        if (command.equals("SSUBSCRIBE")) {
+                            SsubscribeCommandHandler ssubscribeHandler = new SsubscribeCommandHandler(psContext);
+                            ssubscribeHandler.execute(args, out);
+                            continue;
+                        }
+                        
+                        if (command.equals("SUNSUBSCRIBE")) {
+                            SunsubscribeCommandHandler sunsubscribeHandler = new SunsubscribeCommandHandler(psContext);
+                            sunsubscribeHandler.execute(args, out);
+                            continue;
+                        }
+                        
+                        // Handle PING command ONLY if in subscribed mode (behavior changes)
+                        // Otherwise, let it go through the normal command registry flow
+                        if (command.equals("PING") && psContext.isSubscribed()) {
+                            PingCommandHandler pingHandler = new PingCommandHandler(psContext);
+                            pingHandler.execute(args, out);
+                            continue;
+                        }
+                        
+                        if (command.equals("RESET")) {
+                            ResetCommandHandler resetHandler = new ResetCommandHandler(psContext, txContext, watchedKeys,
+                                clientTracking, trackingClient);
+                            resetHandler.execute(args, out);
+                            continue;
+                        }
+                        
+                        // The finally block below drops the subscriptions
+                        if (command.equals("QUIT")) {
+                            new QuitCommandHandler().execute(args, out);
+                            break;
+                        }
+                    }
+                }
+                
+                // Handle transaction commands specially
+                if (command.equals("MULTI")) {
+                    MultiCommandHandler multiHandler = new MultiCommandHandler(txContext);
+                    multiHandler.execute(args, out);
                     continue;
                 }
                 
-                // Handle SUBSCRIBE command (needs pub/sub context)
-                if (command.equals("SUBSCRIBE")) {
-                    SubscribeCommandHandler subscribeHandler = new SubscribeCommandHandler(psContext);
-                    subscribeHandler.execute(args, out);
+                if (command.equals("EXEC")) {
+                    ExecCommandHandler execHandler = new ExecCommandHandler(txContext, commandRegistry, watchedKeys,
+                        keyLocks, clientTracking, trackingClient);
+                    try {
+                        execHandler.execute(args, out);
+                    } finally {
+                        serveBlocked();
+                    }
+                    // Transactions aren't replicated, so neither are their side effects
+                    commandPropagator.drainPending();
                     continue;
                 }
                 
-                // Handle PING command ONLY if in subscribed mode (behavior changes)
-                // Otherwise, let it go through the normal command registry flow
-                if (command.equals("PING") && psContext.isSubscribed()) {
-                    PingCommandHandler pingHandler = new PingCommandHandler(psContext);
-                    pingHandler.execute(args, out);
+                if (command.equals("CLIENT")) {
+                    ClientCommandHandler clientHandler = new ClientCommandHandler(clientTracking, trackingClient);
+                    clientHandler.execute(args, out);
                     continue;
                 }
                 
-                // Handle transaction commands specially
-                if (command.equals("MULTI")) {
-                    MultiCommandHandler multiHandler = new MultiCommandHandler(txContext);
-                    multiHandler.execute(args, out);
+                if (command.equals("WATCH")) {
+                    WatchCommandHandler watchHandler = new WatchCommandHandler(txContext, watchedKeys);
+                    watchHandler.execute(args, out);
                     continue;
                 }
                 
-                if (command.equals("EXEC")) {
-                    ExecCommandHandler execHandler = new ExecCommandHandler(txContext, commandRegistry);
-                    execHandler.execute(args, out);
+                if (command.equals("UNWATCH") && !txContext.isInTransaction()) {
+                    UnwatchCommandHandler unwatchHandler = new UnwatchCommandHandler(txContext, watchedKeys);
+                    unwatchHandler.execute(args, out);
                     continue;
                 }
                 
                 if (command.equals("DISCARD")) {
-                    DiscardCommandHandler discardHandler = new DiscardCommandHandler(txContext);
+                    DiscardCommandHandler discardHandler = new DiscardCommandHandler(txContext, watchedKeys);
                     discardHandler.execute(args, out);
                     continue;
                 }
@@ -262,8 +433,18 @@ public class Main {
                     continue;
                 }
                 
-                // Execute command using registry
-                boolean executed = commandRegistry.executeCommand(command, args, out);
+                // Remember the keys a tracking client reads before replying
+                clientTracking.beforeCommand(trackingClient, command, args);
+                
+                // Execute command using registry, never in the middle of an EXEC on its keys
+                boolean executed;
+                KeyLocks.Held held = keyLocks.lockShared(command, args);
+                try {
+                    executed = commandRegistry.executeCommand(command, args, out, blockingContext);
+                } finally {
+                    held.unlock();
+                    serveBlocked();
+                }
                 
                 if (!executed) {
                     sendError(out, "unknown command");
@@ -274,16 +455,36 @@ public class Main {
                 if (serverRole.equals("master") && commandRegistry.isWriteCommand(command)) {
                     propagateCommandToReplicas(args);
                 }
+                propagatePending();
+                
+                // Nothing more is read from a parked client until it is answered
+                if (!blockingContext.awaitAnswer()) {
+                    break;
+                }
             }
         } catch (IOException e) {
             System.out.println("Client disconnected");
         } finally {
+            // Unpark first, so no push hands this connection an element it will never read
+            if (blockingContext != null) {
+                blockingContext.cancel();
+            }
+            
             // Clean up thread-locals to prevent memory leaks
+            transactionContext.get().unwatchAll(watchedKeys);
             transactionContext.remove();
             
-            // Clean up pub/sub subscriptions when client disconnects
-            // Note: We can't access 'out' here, but PubSubManager will handle cleanup
-            // when the OutputStream is closed
+            // Clean up pub/sub subscriptions when client disconnects, so
+            // PUBLISH stops counting and queueing for a dead connection
+            if (psContext != null) {
+                psContext.clearSubscriptions();
+            }
+            if (trackingClient != null) {
+                clientTracking.unregister(trackingClient);
+            }
+            try {
+                client.close();
+            } catch (IOException ignored) {}
         }
     }
     
@@ -295,6 +496,8 @@ public class Main {
                command.equals("UNSUBSCRIBE") ||
                command.equals("PSUBSCRIBE") ||
                command.equals("PUNSUBSCRIBE") ||
+               command.equals("SSUBSCRIBE") ||
+               command.equals("SUNSUBSCRIBE") ||
                command.equals("PING") ||
                command.equals("QUIT") ||
                command.equals("RESET");
@@ -310,13 +513,35 @@ public class Main {
         out.flush();
     }
     
+    /**
+     * Serves clients blocked on keys the last command or EXEC pushed to.
+     * Called once its KeyLocks are released, so the pops it queues are
+     * propagated after the command.
+     */
+    private static void serveBlocked() {
+        listStore.serveBlocked(commandPropagator);
+        streamStore.serveBlocked(commandPropagator);
+    }
+    
+    /**
+     * Propagates commands queued through CommandPropagator while executing
+     * the current command, right after the command itself.
+     */
+    private static void propagatePending() {
+        for (String[] pending : commandPropagator.drainPending()) {
+            if (serverRole.equals("master")) {
+                propagateCommandToReplicas(pending);
+            }
+        }
+    }
+    
     private static void propagateCommandToReplicas(String[] args) {
         // Build RESP array for the command
         StringBuilder respArray = new StringBuilder();
         respArray.append("*").append(args.length).append("\r\n");
         
         for (String arg : args) {
-            respArray.append("$").append(arg.length()).append("\r\n");
+            respArray.append("$").append(arg.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
             respArray.append(arg).append("\r\n");
         }
         
@@ -348,26 +573,6 @@ public class Main {
         replicationTracker.addToOffset(commandBytes.length);
     }
     
-    private static void startExpiryThread() {
-        new Thread(() -> {
-            while (true) {
-                List<BlockedClient> expired = listStore.collectExpiredBlockedClients();
-
-                for (BlockedClient client : expired) {
-                    try {
-                        sendNullBulkString(client.out);
-                    } catch (IOException ignored) {}
-                }
-                try { Thread.sleep(10); } catch (Exception ignored) {}
-            }
-        }).start();
-    }
-    
-    private static void sendNullBulkString(OutputStream out) throws IOException {
-        out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
-        out.flush();
-    }
-
     private static void initiateReplicaHandshake() {
         new Thread(() -> {
             try {
@@ -524,7 +729,15 @@ public class Main {
                 try {
                     // Use a NullOutputStream to discard responses
                     OutputStream nullOut = new ByteArrayOutputStream();
-                    commandRegistry.executeCommand(command, args, nullOut);
+                    KeyLocks.Held held = keyLocks.lockShared(command, args);
+                    try {
+                        // No BlockingContext: replicated commands never park
+                        commandRegistry.executeCommand(command, args, nullOut, null);
+                    } finally {
+                        held.unlock();
+                        serveBlocked();
+                    }
+                    commandPropagator.drainPending();
                     System.out.println("Replica executed: " + command);
                 } catch (Exception e) {
                     System.err.println("Error executing command on replica: " + e.getMessage());
@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class ObjectCommandHandler extends BaseCommandHandler {
+    // Strings up to this length are embedded in the object header in Redis
+    private static final int EMBSTR_SIZE_LIMIT = 44;
+
+    private final KeyValueStore keyValueStore;
+    private final ListStore listStore;
+    private final StreamStore streamStore;
+
+    public ObjectCommandHandler(KeyValueStore keyValueStore, ListStore listStore, StreamStore streamStore) {
+        this.keyValueStore = keyValueStore;
+        this.listStore = listStore;
+        this.streamStore = streamStore;
+    }
+
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 2) {
+            sendError(out, "wrong number of arguments for 'object' command");
+            return;
+        }
+
+        String subcommand = args[1].toUpperCase();
+        if (!subcommand.equals("ENCODING")) {
+            sendError(out, "unknown subcommand '" + args[1] + "'. Try OBJECT HELP.");
+            return;
+        }
+        if (args.length != 3) {
+            sendError(out, "wrong number of arguments for 'object|encoding' command");
+            return;
+        }
+
+        String encoding = encodingOf(args[2]);
+        if (encoding == null) {
+            sendNullBulkString(out);
+        } else {
+            sendBulkString(out, encoding);
+        }
+    }
+
+    private String encodingOf(String key) {
+        if (streamStore.exists(key)) {
+            return "stream";
+        }
+        String listEncoding = listStore.encoding(key);
+        if (listEncoding != null) {
+            return listEncoding;
+        }
+        String value = keyValueStore.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (isInteger(value)) {
+            return "int";
+        }
+        return value.length() <= EMBSTR_SIZE_LIMIT ? "embstr" : "raw";
+    }
+
+    private static boolean isInteger(String value) {
+        if (value.isEmpty() || value.length() > 20) {
+            return false;
+        }
+        try {
+            return Long.toString(Long.parseLong(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getCommandName() {
+        return "OBJECT";
+    }
+
+    @Override
+    public boolean isWriteCommand() {
+        return false; // OBJECT only inspects keys
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A client parked by a blocking command. Whoever calls finish() first owns
+ * it: a write that serves it, the timer, or its own connection going away.
+ */
+abstract class ParkedClient {
+    volatile HashedWheelTimer.Timeout timeout;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private boolean answered;  // guarded by this
+
+    boolean finish() {
+        return finished.compareAndSet(false, true);
+    }
+
+    boolean isFinished() {
+        return finished.get();
+    }
+
+    /**
+     * Marks the reply written (or failed), releasing the connection thread
+     * waiting in awaitAnswer.
+     */
+    synchronized void answered() {
+        answered = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits up to timeoutMs for the reply; true once it has been written.
+     */
+    synchronized boolean awaitAnswer(long timeoutMs) throws InterruptedException {
+        if (!answered) {
+            wait(timeoutMs);
+        }
+        return answered;
+    }
+
+    /**
+     * Takes the client out of its store's wait queues once its connection
+     * has claimed it with finish().
+     */
+    abstract void unregister();
+}
@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The set of subscribed PSUBSCRIBE patterns, arranged for matching one
+ * channel against many patterns.
+ *
+ * Each pattern hangs off a character trie at the node for its literal
+ * prefix ("news.*" under n-e-w-s-.). Matching a channel walks the trie
+ * along the channel's characters and only evaluates the patterns found on
+ * that path, so patterns with unrelated prefixes cost nothing. Patterns
+ * with no literal prefix ("*", "?x") sit at the root and are always tried.
+ *
+ * Not thread-safe: PubSubManager guards it.
+ */
+public class PatternIndex {
+    private final Node root = new Node();
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a compiled pattern. Returns false if it was already present.
+     */
+    public boolean add(GlobPattern pattern) {
+        Node node = root;
+        String prefix = pattern.prefix();
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), k -> new Node());
+        }
+        for (GlobPattern existing : node.patterns) {
+            if (existing.pattern().equals(pattern.pattern())) {
+                return false;
+            }
+        }
+        node.patterns.add(pattern);
+        size++;
+        return true;
+    }
+
+    public boolean remove(String pattern) {
+        String prefix = new GlobPattern(pattern).prefix();
+        List<Node> path = new ArrayList<>(prefix.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+            path.add(node);
+        }
+        if (node == null || !node.patterns.removeIf(p -> p.pattern().equals(pattern))) {
+            return false;
+        }
+        size--;
+        // Prune nodes left with neither patterns nor children
+        for (int i = prefix.length(); i > 0 && path.get(i).isEmpty(); i--) {
+            path.get(i - 1).children.remove(prefix.charAt(i - 1));
+        }
+        return true;
+    }
+
+    /**
+     * Calls action with every pattern that matches channel.
+     */
+    public void match(String channel, Consumer<GlobPattern> action) {
+        Node node = root;
+        int i = 0;
+        while (true) {
+            for (GlobPattern pattern : node.patterns) {
+                if (pattern.matchesAfterPrefix(channel)) {
+                    action.accept(pattern);
+                }
+            }
+            if (i == channel.length()) {
+                return;
+            }
+            node = node.children.get(channel.charAt(i++));
+            if (node == null) {
+                return;
+            }
+        }
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>(4);
+        final List<GlobPattern> patterns = new ArrayList<>(1);
+
+        boolean isEmpty() {
+            return children.isEmpty() && patterns.isEmpty();
+        }
+    }
+}
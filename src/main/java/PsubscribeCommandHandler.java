@@ -0,0 +1,53 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+
+public class PsubscribeCommandHandler extends BaseCommandHandler {
+    private final PubSubContext pubSubContext;
+    
+    public PsubscribeCommandHandler(PubSubContext pubSubContext) {
+        this.pubSubContext = pubSubContext;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 2) {
+            sendError(out, "wrong number of arguments for 'psubscribe' command");
+            return;
+        }
+        
+        // Subscribe to each pattern specified
+        for (int i = 1; i < args.length; i++) {
+            String pattern = args[i];
+            pubSubContext.psubscribe(pattern);
+            sendPsubscribeResponse(out, pattern, pubSubContext.getSubscriptionCount());
+        }
+    }
+    
+    private void sendPsubscribeResponse(OutputStream out, String pattern, int count) throws IOException {
+        StringBuilder response = new StringBuilder();
+        
+        response.append("*3\r\n");
+        
+        response.append("$10\r\npsubscribe\r\n");
+        
+        response.append("$").append(pattern.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
+        response.append(pattern).append("\r\n");
+        
+        response.append(":").append(count).append("\r\n");
+        
+        out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "PSUBSCRIBE";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; 
+    }
+}
@@ -5,24 +5,43 @@ import java.util.Set;
 
 public class PubSubContext {
     private final Set<String> subscribedChannels = new HashSet<>();
+    private final Set<String> subscribedPatterns = new HashSet<>();
+    private final Set<String> subscribedShardChannels = new HashSet<>();
     private final PubSubManager pubSubManager;
     private final OutputStream clientOut;
+    private final SubscriberQueue queue;
     
+    /**
+     * Subscribe and unsubscribe calls, and the replies that go with them,
+     * must hold clientOut's monitor so they are ordered with message
+     * delivery (see SubscriberQueue).
+     */
     public PubSubContext(PubSubManager pubSubManager, OutputStream clientOut) {
         this.pubSubManager = pubSubManager;
         this.clientOut = clientOut;
+        this.queue = new SubscriberQueue(clientOut);
+    }
+    
+    /**
+     * Where messages for this client are queued; also the target of its
+     * CLIENT TRACKING invalidations.
+     */
+    public SubscriberQueue getQueue() {
+        return queue;
     }
     
     public boolean isSubscribed() {
-        return !subscribedChannels.isEmpty();
+        return !subscribedChannels.isEmpty() || !subscribedPatterns.isEmpty()
+            || !subscribedShardChannels.isEmpty();
     }
     
     public boolean subscribe(String channel) {
         boolean isNew = subscribedChannels.add(channel);
         
         if (pubSubManager != null) {
-            pubSubManager.subscribe(channel, clientOut);
+            pubSubManager.subscribe(channel, queue);
         }
+        queue.setOpen(isSubscribed());
         
         return isNew;
     }
@@ -32,14 +51,77 @@ public class PubSubContext {
         
         // Unregister from global manager
         if (removed && pubSubManager != null) {
-            pubSubManager.unsubscribe(channel, clientOut);
+            pubSubManager.unsubscribe(channel, queue);
+        }
+        queue.setOpen(isSubscribed());
+        
+        return removed;
+    }
+    
+    public boolean psubscribe(String pattern) {
+        boolean isNew = subscribedPatterns.add(pattern);
+        
+        if (isNew && pubSubManager != null) {
+            pubSubManager.psubscribe(pattern, queue);
+        }
+        queue.setOpen(isSubscribed());
+        
+        return isNew;
+    }
+    
+    public boolean punsubscribe(String pattern) {
+        boolean removed = subscribedPatterns.remove(pattern);
+        
+        if (removed && pubSubManager != null) {
+            pubSubManager.punsubscribe(pattern, queue);
+        }
+        queue.setOpen(isSubscribed());
+        
+        return removed;
+    }
+    
+    public boolean ssubscribe(String shardChannel) {
+        boolean isNew = subscribedShardChannels.add(shardChannel);
+        
+        if (isNew && pubSubManager != null) {
+            pubSubManager.ssubscribe(shardChannel, queue);
+        }
+        queue.setOpen(isSubscribed());
+        
+        return isNew;
+    }
+    
+    public boolean sunsubscribe(String shardChannel) {
+        boolean removed = subscribedShardChannels.remove(shardChannel);
+        
+        if (removed && pubSubManager != null) {
+            pubSubManager.sunsubscribe(shardChannel, queue);
         }
+        queue.setOpen(isSubscribed());
         
         return removed;
     }
     
+    /**
+     * Channels plus patterns, as reported in (un)subscribe replies.
+     */
     public int getSubscriptionCount() {
-        return subscribedChannels.size();
+        return subscribedChannels.size() + subscribedPatterns.size();
+    }
+    
+    /**
+     * Shard channels only, as reported in s(un)subscribe replies.
+     */
+    public int getShardSubscriptionCount() {
+        return subscribedShardChannels.size();
+    }
+    
+    public Set<String> getSubscribedShardChannels() {
+        return new HashSet<>(subscribedShardChannels);
+    }
+    
+    public Set<String> getSubscribedPatterns() {
+        return new HashSet<>(subscribedPatterns);
     }
     
     public Set<String> getSubscribedChannels() {
@@ -52,9 +134,20 @@ public class PubSubContext {
     
     public void clearSubscriptions() {
         if (pubSubManager != null) {
-            pubSubManager.unsubscribeAll(clientOut);
+            for (String channel : subscribedChannels) {
+                pubSubManager.unsubscribe(channel, queue);
+            }
+            for (String shardChannel : subscribedShardChannels) {
+                pubSubManager.sunsubscribe(shardChannel, queue);
+            }
+            for (String pattern : subscribedPatterns) {
+                pubSubManager.punsubscribe(pattern, queue);
+            }
         }
         
         subscribedChannels.clear();
+        subscribedShardChannels.clear();
+        subscribedPatterns.clear();
+        queue.setOpen(false);
     }
 }
\ No newline at end of file
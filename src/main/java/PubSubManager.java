@@ -1,75 +1,271 @@
-import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 
+/**
+ * Global pub/sub registry: which subscribers listen on each channel, shard
+ * channel and pattern. Each client's own subscriptions are tracked by its
+ * PubSubContext.
+ *
+ * Channel and shard channel subscribers are kept as copy-on-write arrays in
+ * a ConcurrentHashMap. (Un)subscribing replaces a channel's array inside
+ * compute(), which only locks that channel's hash bin. PUBLISH reads the
+ * current array with a plain get and never copies or locks. Patterns
+ * change rarely and are matched through a trie, so they keep a single
+ * lock. It is skipped entirely while no pattern is subscribed.
+ */
 public class PubSubManager {
-    private final Map<String, Set<OutputStream>> channelSubscribers = new ConcurrentHashMap<>();
-    
-    private final Map<OutputStream, Set<String>> clientChannels = new ConcurrentHashMap<>();
-    
-
-    public synchronized boolean subscribe(String channel, OutputStream clientOut) {
-        channelSubscribers.computeIfAbsent(channel, k -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
-                          .add(clientOut);
+    private static final SubscriberQueue[] NONE = new SubscriberQueue[0];
+
+    private final ConcurrentHashMap<String, SubscriberQueue[]> channelSubscribers = new ConcurrentHashMap<>();
+
+    // SSUBSCRIBE channels live apart from regular channels, as in Redis
+    private final ConcurrentHashMap<String, SubscriberQueue[]> shardChannelSubscribers = new ConcurrentHashMap<>();
+
+    // PSUBSCRIBE patterns: subscribers per pattern, plus a prefix trie for matching
+    private final Map<String, SubscriberQueue[]> patternSubscribers = new HashMap<>();
+
+    private final PatternIndex patternIndex = new PatternIndex();
+
+    private volatile int patternCount;
+
+
+    public boolean subscribe(String channel, SubscriberQueue subscriber) {
+        return add(channelSubscribers, channel, subscriber);
+    }
+
+
+    public boolean unsubscribe(String channel, SubscriberQueue subscriber) {
+        return remove(channelSubscribers, channel, subscriber);
+    }
+
+    public boolean ssubscribe(String shardChannel, SubscriberQueue subscriber) {
+        return add(shardChannelSubscribers, shardChannel, subscriber);
+    }
+
+    public boolean sunsubscribe(String shardChannel, SubscriberQueue subscriber) {
+        return remove(shardChannelSubscribers, shardChannel, subscriber);
+    }
+
+    public int getSubscriberCount(String channel) {
+        return getSubscribers(channel).length;
+    }
+
+
+    /**
+     * The channel's current subscribers. The array is shared and must not
+     * be modified.
+     */
+    public SubscriberQueue[] getSubscribers(String channel) {
+        SubscriberQueue[] subscribers = channelSubscribers.get(channel);
+        return subscribers != null ? subscribers : NONE;
+    }
+
+    public SubscriberQueue[] getShardSubscribers(String shardChannel) {
+        SubscriberQueue[] subscribers = shardChannelSubscribers.get(shardChannel);
+        return subscribers != null ? subscribers : NONE;
+    }
+
+    public int getShardSubscriberCount(String shardChannel) {
+        return getShardSubscribers(shardChannel).length;
+    }
+
+    /**
+     * Channels with at least one subscriber, optionally filtered by a glob
+     * pattern, for PUBSUB CHANNELS.
+     */
+    public List<String> getChannels(String pattern) {
+        return activeChannels(channelSubscribers, pattern);
+    }
+
+    public List<String> getShardChannels(String pattern) {
+        return activeChannels(shardChannelSubscribers, pattern);
+    }
+
+    /**
+     * Number of distinct subscribed patterns, for PUBSUB NUMPAT.
+     */
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    public boolean psubscribe(String pattern, SubscriberQueue subscriber) {
+        synchronized (patternIndex) {
+            SubscriberQueue[] subscribers = patternSubscribers.get(pattern);
+            if (subscribers == null) {
+                patternIndex.add(new GlobPattern(pattern));
+                patternCount = patternIndex.size();
+                subscribers = NONE;
+            }
+            SubscriberQueue[] updated = with(subscribers, subscriber);
+            patternSubscribers.put(pattern, updated);
+            return updated != subscribers;
+        }
+    }
+
+    public boolean punsubscribe(String pattern, SubscriberQueue subscriber) {
+        synchronized (patternIndex) {
+            SubscriberQueue[] subscribers = patternSubscribers.get(pattern);
+            if (subscribers == null) {
+                return false;
+            }
+            SubscriberQueue[] updated = without(subscribers, subscriber);
+            if (updated == null) {
+                patternSubscribers.remove(pattern);
+                patternIndex.remove(pattern);
+                patternCount = patternIndex.size();
+            } else {
+                patternSubscribers.put(pattern, updated);
+            }
+            return updated != subscribers;
+        }
+    }
+
+    /**
+     * Subscribers of every pattern matching channel, keyed by pattern, for
+     * pmessage delivery. Only patterns sharing a prefix with the channel
+     * are evaluated.
+     */
+    public Map<String, SubscriberQueue[]> getPatternSubscribers(String channel) {
+        if (patternCount == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, SubscriberQueue[]> matches = new HashMap<>();
+        synchronized (patternIndex) {
+            patternIndex.match(channel, pattern ->
+                matches.put(pattern.pattern(), patternSubscribers.get(pattern.pattern())));
+        }
+        return matches;
+    }
+
+    /**
+     * Delivers message to the channel's subscribers and to every matching
+     * pattern subscription, each counted once. Every frame is encoded once
+     * and only queued here (see SubscriberQueue). Returns the number of
+     * receivers.
+     */
+    public int publish(String channel, String message) {
+        SubscriberQueue[] subscribers = getSubscribers(channel);
+        int receivers = subscribers.length;
+        
+        if (subscribers.length > 0) {
+            StringBuilder messageArray = new StringBuilder();
+            messageArray.append("*3\r\n");
+            messageArray.append("$7\r\nmessage\r\n");
+            BaseCommandHandler.appendBulk(messageArray, channel);
+            BaseCommandHandler.appendBulk(messageArray, message);
+            deliver(messageArray, subscribers);
+        }
         
-        clientChannels.computeIfAbsent(clientOut, k -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
-                      .add(channel);
+        for (Map.Entry<String, SubscriberQueue[]> match : getPatternSubscribers(channel).entrySet()) {
+            receivers += match.getValue().length;
+            
+            StringBuilder messageArray = new StringBuilder();
+            messageArray.append("*4\r\n");
+            messageArray.append("$8\r\npmessage\r\n");
+            BaseCommandHandler.appendBulk(messageArray, match.getKey());
+            BaseCommandHandler.appendBulk(messageArray, channel);
+            BaseCommandHandler.appendBulk(messageArray, message);
+            deliver(messageArray, match.getValue());
+        }
         
-        return true;
+        return receivers;
     }
-    
 
-    public synchronized boolean unsubscribe(String channel, OutputStream clientOut) {
-        Set<OutputStream> subscribers = channelSubscribers.get(channel);
-        if (subscribers != null) {
-            subscribers.remove(clientOut);
-            if (subscribers.isEmpty()) {
-                channelSubscribers.remove(channel);
+    /**
+     * SPUBLISH: shard channel subscribers only, never patterns.
+     */
+    public int spublish(String shardChannel, String message) {
+        SubscriberQueue[] subscribers = getShardSubscribers(shardChannel);
+        if (subscribers.length > 0) {
+            StringBuilder messageArray = new StringBuilder();
+            messageArray.append("*3\r\n");
+            messageArray.append("$8\r\nsmessage\r\n");
+            BaseCommandHandler.appendBulk(messageArray, shardChannel);
+            BaseCommandHandler.appendBulk(messageArray, message);
+            deliver(messageArray, subscribers);
+        }
+        return subscribers.length;
+    }
+
+    private static void deliver(StringBuilder messageArray, SubscriberQueue[] subscribers) {
+        byte[] messageBytes = messageArray.toString().getBytes(StandardCharsets.UTF_8);
+        for (SubscriberQueue subscriber : subscribers) {
+            subscriber.enqueue(messageBytes);
+        }
+    }
+
+    private static List<String> activeChannels(ConcurrentHashMap<String, SubscriberQueue[]> registry,
+                                               String pattern) {
+        // An unsubscribe removes a channel together with its last subscriber
+        if (pattern == null) {
+            return new ArrayList<>(registry.keySet());
+        }
+        GlobPattern glob = new GlobPattern(pattern);
+        List<String> channels = new ArrayList<>();
+        for (String channel : registry.keySet()) {
+            if (glob.matches(channel)) {
+                channels.add(channel);
             }
         }
-        
-        Set<String> channels = clientChannels.get(clientOut);
-        if (channels != null) {
-            boolean removed = channels.remove(channel);
-            if (channels.isEmpty()) {
-                clientChannels.remove(clientOut);
+        return channels;
+    }
+
+    private static boolean add(ConcurrentHashMap<String, SubscriberQueue[]> registry, String channel,
+                               SubscriberQueue subscriber) {
+        boolean[] added = new boolean[1];
+        registry.compute(channel, (k, subscribers) -> {
+            SubscriberQueue[] current = subscribers != null ? subscribers : NONE;
+            SubscriberQueue[] updated = with(current, subscriber);
+            added[0] = updated != current;
+            return updated;
+        });
+        return added[0];
+    }
+
+    private static boolean remove(ConcurrentHashMap<String, SubscriberQueue[]> registry, String channel,
+                                  SubscriberQueue subscriber) {
+        boolean[] removed = new boolean[1];
+        registry.computeIfPresent(channel, (k, subscribers) -> {
+            SubscriberQueue[] updated = without(subscribers, subscriber);
+            removed[0] = updated != subscribers;
+            return updated;  // null drops the channel
+        });
+        return removed[0];
+    }
+
+    /**
+     * A copy of subscribers with subscriber appended, or the same array if
+     * it is already present.
+     */
+    private static SubscriberQueue[] with(SubscriberQueue[] subscribers, SubscriberQueue subscriber) {
+        for (SubscriberQueue existing : subscribers) {
+            if (existing == subscriber) {
+                return subscribers;
             }
-            return removed;
         }
-        
-        return false;
+        SubscriberQueue[] updated = Arrays.copyOf(subscribers, subscribers.length + 1);
+        updated[subscribers.length] = subscriber;
+        return updated;
     }
-    
-    public int getSubscriberCount(String channel) {
-        Set<OutputStream> subscribers = channelSubscribers.get(channel);
-        return subscribers != null ? subscribers.size() : 0;
-    }
-    
-
-    public Set<OutputStream> getSubscribers(String channel) {
-        Set<OutputStream> subscribers = channelSubscribers.get(channel);
-        return subscribers != null ? new HashSet<>(subscribers) : Collections.emptySet();
-    }
-    
-    public synchronized void unsubscribeAll(OutputStream clientOut) {
-        Set<String> channels = clientChannels.remove(clientOut);
-        if (channels != null) {
-            for (String channel : channels) {
-                Set<OutputStream> subscribers = channelSubscribers.get(channel);
-                if (subscribers != null) {
-                    subscribers.remove(clientOut);
-                    if (subscribers.isEmpty()) {
-                        channelSubscribers.remove(channel);
-                    }
+
+    /**
+     * A copy of subscribers without subscriber, the same array if it was not
+     * present, or null if nothing is left.
+     */
+    private static SubscriberQueue[] without(SubscriberQueue[] subscribers, SubscriberQueue subscriber) {
+        for (int i = 0; i < subscribers.length; i++) {
+            if (subscribers[i] == subscriber) {
+                if (subscribers.length == 1) {
+                    return null;
                 }
+                SubscriberQueue[] updated = new SubscriberQueue[subscribers.length - 1];
+                System.arraycopy(subscribers, 0, updated, 0, i);
+                System.arraycopy(subscribers, i + 1, updated, i, updated.length - i);
+                return updated;
             }
         }
+        return subscribers;
     }
-    
-   
-    public Set<String> getClientChannels(OutputStream clientOut) {
-        Set<String> channels = clientChannels.get(clientOut);
-        return channels != null ? new HashSet<>(channels) : Collections.emptySet();
-    }
-}
\ No newline at end of file
+}
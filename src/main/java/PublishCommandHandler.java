@@ -1,13 +1,13 @@
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Set;
 
 public class PublishCommandHandler extends BaseCommandHandler {
     private final PubSubManager pubSubManager;
+    private final CommandPropagator propagator;
     
-    public PublishCommandHandler(PubSubManager pubSubManager) {
+    public PublishCommandHandler(PubSubManager pubSubManager, CommandPropagator propagator) {
         this.pubSubManager = pubSubManager;
+        this.propagator = propagator;
     }
     
     @Override
@@ -20,42 +20,11 @@ public class PublishCommandHandler extends BaseCommandHandler {
         String channel = args[1];
         String message = args[2];
         
-        Set<OutputStream> subscribers = pubSubManager.getSubscribers(channel);
-        int subscriberCount = subscribers.size();
+        int receivers = pubSubManager.publish(channel, message);
         
-        deliverMessageToSubscribers(channel, message, subscribers);
-        
-        sendInteger(out, subscriberCount);
-    }
-
-    private void deliverMessageToSubscribers(String channel, String message, Set<OutputStream> subscribers) {
-        if (subscribers.isEmpty()) {
-            return;
-        }
-        
-        StringBuilder messageArray = new StringBuilder();
-        
-        messageArray.append("*3\r\n");
-        
-        messageArray.append("$7\r\nmessage\r\n");
-        
-        messageArray.append("$").append(channel.length()).append("\r\n");
-        messageArray.append(channel).append("\r\n");
-        
-        messageArray.append("$").append(message.length()).append("\r\n");
-        messageArray.append(message).append("\r\n");
-        
-        byte[] messageBytes = messageArray.toString().getBytes(StandardCharsets.UTF_8);
-        
-        for (OutputStream subscriber : subscribers) {
-            try {
-                subscriber.write(messageBytes);
-                subscriber.flush();
-                System.out.println("Delivered message to subscriber on channel: " + channel);
-            } catch (IOException e) {
-                System.err.println("Failed to deliver message to subscriber: " + e.getMessage());
-            }
-        }
+        // Not a write, but replicas deliver it to their own subscribers
+        propagator.alsoPropagate("PUBLISH", channel, message);
+        sendInteger(out, receivers);
     }
     
     @Override
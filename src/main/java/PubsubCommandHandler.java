@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * PUBSUB CHANNELS / NUMSUB / NUMPAT and their SHARD variants. Every count
+ * comes straight from PubSubManager's subscriber arrays, so nothing is
+ * copied per channel.
+ */
+public class PubsubCommandHandler extends BaseCommandHandler {
+    private final PubSubManager pubSubManager;
+    
+    public PubsubCommandHandler(PubSubManager pubSubManager) {
+        this.pubSubManager = pubSubManager;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 2) {
+            sendError(out, "wrong number of arguments for 'pubsub' command");
+            return;
+        }
+        
+        String subcommand = args[1].toUpperCase();
+        switch (subcommand) {
+            case "CHANNELS":
+            case "SHARDCHANNELS":
+                if (args.length > 3) {
+                    sendError(out, "wrong number of arguments for 'pubsub|" + subcommand.toLowerCase() + "' command");
+                    return;
+                }
+                String pattern = args.length == 3 ? args[2] : null;
+                sendArray(out, subcommand.equals("CHANNELS")
+                    ? pubSubManager.getChannels(pattern)
+                    : pubSubManager.getShardChannels(pattern));
+                return;
+            case "NUMSUB":
+            case "SHARDNUMSUB":
+                sendNumsub(out, args, subcommand.equals("SHARDNUMSUB"));
+                return;
+            case "NUMPAT":
+                if (args.length != 2) {
+                    sendError(out, "wrong number of arguments for 'pubsub|numpat' command");
+                    return;
+                }
+                sendInteger(out, pubSubManager.getPatternCount());
+                return;
+            default:
+                sendError(out, "unknown subcommand '" + args[1] + "'. Try PUBSUB HELP.");
+        }
+    }
+    
+    private void sendNumsub(OutputStream out, String[] args, boolean shard) throws IOException {
+        StringBuilder response = new StringBuilder();
+        response.append("*").append((args.length - 2) * 2).append("\r\n");
+        for (int i = 2; i < args.length; i++) {
+            String channel = args[i];
+            int count = shard ? pubSubManager.getShardSubscriberCount(channel) : pubSubManager.getSubscriberCount(channel);
+            response.append("$").append(channel.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
+            response.append(channel).append("\r\n");
+            response.append(":").append(count).append("\r\n");
+        }
+        out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "PUBSUB";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false;
+    }
+}
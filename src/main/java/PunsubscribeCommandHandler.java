@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class PunsubscribeCommandHandler extends BaseCommandHandler {
+    private final PubSubContext pubSubContext;
+    
+    public PunsubscribeCommandHandler(PubSubContext pubSubContext) {
+        this.pubSubContext = pubSubContext;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        // No arguments means every pattern this client is subscribed to
+        List<String> patterns = args.length > 1
+            ? Arrays.asList(args).subList(1, args.length)
+            : new ArrayList<>(pubSubContext.getSubscribedPatterns());
+        
+        if (patterns.isEmpty()) {
+            sendPunsubscribeResponse(out, null, pubSubContext.getSubscriptionCount());
+            return;
+        }
+        
+        for (String pattern : patterns) {
+            pubSubContext.punsubscribe(pattern);
+            sendPunsubscribeResponse(out, pattern, pubSubContext.getSubscriptionCount());
+        }
+    }
+    
+    private void sendPunsubscribeResponse(OutputStream out, String pattern, int count) throws IOException {
+        StringBuilder response = new StringBuilder();
+        
+        response.append("*3\r\n");
+        
+        response.append("$12\r\npunsubscribe\r\n");
+        
+        if (pattern == null) {
+            response.append("$-1\r\n");
+        } else {
+            response.append("$").append(pattern.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
+            response.append(pattern).append("\r\n");
+        }
+        
+        response.append(":").append(count).append("\r\n");
+        
+        out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "PUNSUBSCRIBE";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; 
+    }
+}
@@ -0,0 +1,648 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chunked doubly-linked list used as the value type of ListStore.
+ *
+ * Elements are stored in fixed-size array nodes. Pushes and pops at either
+ * end touch only the head or tail node, so they are O(1). Positional access
+ * skips whole nodes, so LINDEX / LRANGE cost O(n / NODE_CAPACITY) to seek.
+ *
+ * Small lists start out as a single ListPack (one byte array, no per-element
+ * objects) and convert to nodes for good once they exceed
+ * list-max-listpack-size entries or hold an element longer than
+ * list-max-listpack-value bytes.
+ *
+ * Not thread-safe: ListStore guards every instance. Readers that stream a
+ * range outside the lock use share(), which marks the covered nodes as
+ * shared; any write into a shared node copies its array first
+ * (copy-on-write), so at most one copy per node per range read.
+ */
+public class QuickList {
+    static final int NODE_CAPACITY = 128;
+
+    // Conversion thresholds, set once at startup from the command line
+    private static volatile int listpackMaxEntries = 128;
+    private static volatile int listpackMaxValue = 64;
+
+    private ListPack pack = new ListPack();  // null once converted to nodes
+    private Node head;
+    private Node tail;
+    private int size;
+
+    public static void setListpackLimits(int maxEntries, int maxValueBytes) {
+        listpackMaxEntries = Math.max(0, maxEntries);
+        listpackMaxValue = Math.min(Math.max(0, maxValueBytes), ListPack.MAX_VALUE_BYTES);
+    }
+
+    public static int listpackMaxEntries() {
+        return listpackMaxEntries;
+    }
+
+    public static int listpackMaxValue() {
+        return listpackMaxValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * OBJECT ENCODING name of the current representation.
+     */
+    public String encoding() {
+        return pack != null ? "listpack" : "quicklist";
+    }
+
+    public void addFirst(String value) {
+        if (pack != null) {
+            if (packFits(size + 1, value)) {
+                pack.addFirst(value);
+                size++;
+                return;
+            }
+            convert();
+        }
+        if (head == null) {
+            // First node starts in the middle so both ends have room
+            Node node = new Node(NODE_CAPACITY / 2);
+            head = node;
+            tail = node;
+        } else if (head.start == 0) {
+            Node node = new Node(NODE_CAPACITY);
+            node.next = head;
+            head.prev = node;
+            head = node;
+        }
+        head.ensureWritable();
+        head.items[--head.start] = value;
+        size++;
+    }
+
+    public void addLast(String value) {
+        if (pack != null) {
+            if (packFits(size + 1, value)) {
+                pack.addLast(value);
+                size++;
+                return;
+            }
+            convert();
+        }
+        if (tail == null) {
+            Node node = new Node(NODE_CAPACITY / 2);
+            head = node;
+            tail = node;
+        } else if (tail.end == NODE_CAPACITY) {
+            Node node = new Node(0);
+            node.prev = tail;
+            tail.next = node;
+            tail = node;
+        }
+        tail.ensureWritable();
+        tail.items[tail.end++] = value;
+        size++;
+    }
+
+    public String pollFirst() {
+        if (pack != null) {
+            String value = pack.pollFirst();
+            if (value != null) {
+                size--;
+            }
+            return value;
+        }
+        if (head == null) {
+            return null;
+        }
+        String value = head.items[head.start];
+        clear(head, head.start, head.start + 1);
+        head.start++;
+        size--;
+        if (head.count() == 0) {
+            unlink(head);
+        }
+        return value;
+    }
+
+    public String pollLast() {
+        if (pack != null) {
+            String value = pack.pollLast();
+            if (value != null) {
+                size--;
+            }
+            return value;
+        }
+        if (tail == null) {
+            return null;
+        }
+        String value = tail.items[--tail.end];
+        clear(tail, tail.end, tail.end + 1);
+        size--;
+        if (tail.count() == 0) {
+            unlink(tail);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the element at the given zero-based index, or null if out of range.
+     */
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        if (pack != null) {
+            return pack.get(index);
+        }
+        Cursor cursor = seek(index);
+        return cursor.node.items[cursor.node.start + cursor.offset];
+    }
+
+    /**
+     * Hands out the node arrays covering start..stop (inclusive, already
+     * clamped by the caller) without copying elements. The nodes are marked
+     * shared so later in-place edits copy them first, leaving the returned
+     * segments stable after the caller releases its lock. O(n / NODE_CAPACITY).
+     * A listpack has no String[] to share, so its range is decoded into one
+     * private segment instead.
+     */
+    public List<Segment> share(int start, int stop) {
+        List<Segment> segments = new ArrayList<>();
+        if (start > stop || start >= size) {
+            return segments;
+        }
+        if (pack != null) {
+            String[] items = pack.toArray();
+            segments.add(new Segment(items, start, stop + 1));
+            return segments;
+        }
+
+        Cursor cursor = seek(start);
+        Node node = cursor.node;
+        int i = node.start + cursor.offset;
+        int remaining = stop - start + 1;
+
+        while (remaining > 0 && node != null) {
+            int take = Math.min(remaining, node.end - i);
+            node.shared = true;
+            segments.add(new Segment(node.items, i, i + take));
+            remaining -= take;
+            node = node.next;
+            if (node != null) {
+                i = node.start;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Replaces the element at index. Caller checks the bounds.
+     */
+    public void set(int index, String value) {
+        if (pack != null) {
+            if (packFits(size, value)) {
+                List<String> values = pack.toList();
+                values.set(index, value);
+                pack.reset(values);
+                return;
+            }
+            convert();
+        }
+        Cursor cursor = seek(index);
+        cursor.node.ensureWritable();
+        cursor.node.items[cursor.node.start + cursor.offset] = value;
+    }
+
+    /**
+     * Inserts value before or after the first occurrence of pivot.
+     * Returns false if pivot is not present.
+     */
+    public boolean insert(String pivot, String value, boolean after) {
+        if (pack != null) {
+            List<String> values = pack.toList();
+            int index = values.indexOf(pivot);
+            if (index < 0) {
+                return false;
+            }
+            if (packFits(size + 1, value)) {
+                values.add(index + (after ? 1 : 0), value);
+                pack.reset(values);
+                size++;
+                return true;
+            }
+            convert();
+        }
+        for (Node node = head; node != null; node = node.next) {
+            for (int i = node.start; i < node.end; i++) {
+                if (node.items[i].equals(pivot)) {
+                    insertAt(node, i - node.start + (after ? 1 : 0), value);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes occurrences of value: the first count from the head when
+     * count > 0, the last |count| from the tail when count < 0, all when 0.
+     * Nodes are compacted in place in a single pass.
+     */
+    public int removeOccurrences(String value, int count) {
+        int limit = count == 0 ? Integer.MAX_VALUE : Math.abs(count);
+        int removed = 0;
+
+        if (pack != null) {
+            String[] items = pack.toArray();
+            boolean[] drop = new boolean[items.length];
+            for (int n = 0; n < items.length && removed < limit; n++) {
+                int i = count >= 0 ? n : items.length - 1 - n;
+                if (items[i].equals(value)) {
+                    drop[i] = true;
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                List<String> kept = new ArrayList<>(items.length - removed);
+                for (int i = 0; i < items.length; i++) {
+                    if (!drop[i]) {
+                        kept.add(items[i]);
+                    }
+                }
+                pack.reset(kept);
+                size -= removed;
+            }
+            return removed;
+        }
+
+        if (count >= 0) {
+            Node node = head;
+            while (node != null && removed < limit) {
+                Node next = node.next;
+                int w = node.start;
+                for (int r = node.start; r < node.end; r++) {
+                    if (removed < limit && node.items[r].equals(value)) {
+                        node.ensureWritable();
+                        removed++;
+                    } else {
+                        node.items[w++] = node.items[r];
+                    }
+                }
+                Arrays.fill(node.items, w, node.end, null);
+                node.end = w;
+                if (node.count() == 0) {
+                    unlink(node);
+                }
+                node = next;
+            }
+        } else {
+            Node node = tail;
+            while (node != null && removed < limit) {
+                Node prev = node.prev;
+                int w = node.end;
+                for (int r = node.end - 1; r >= node.start; r--) {
+                    if (removed < limit && node.items[r].equals(value)) {
+                        node.ensureWritable();
+                        removed++;
+                    } else {
+                        node.items[--w] = node.items[r];
+                    }
+                }
+                Arrays.fill(node.items, node.start, w, null);
+                node.start = w;
+                if (node.count() == 0) {
+                    unlink(node);
+                }
+                node = prev;
+            }
+        }
+
+        size -= removed;
+        return removed;
+    }
+
+    /**
+     * Keeps only elements start..stop (inclusive, already clamped by the
+     * caller). Whole nodes outside the range are unlinked without touching
+     * their elements.
+     */
+    public void trim(int start, int stop) {
+        if (start > stop || start >= size) {
+            head = null;
+            tail = null;
+            size = 0;
+            if (pack != null) {
+                pack.reset(List.of());
+            }
+            return;
+        }
+        if (pack != null) {
+            String[] items = pack.toArray();
+            pack.reset(Arrays.asList(items).subList(start, stop + 1));
+            size = stop - start + 1;
+            return;
+        }
+        removeFirst(start);
+        removeLast(size - (stop - start + 1));
+    }
+
+    private void removeFirst(int n) {
+        while (n > 0 && n >= head.count()) {
+            n -= head.count();
+            size -= head.count();
+            unlink(head);
+        }
+        if (n > 0) {
+            clear(head, head.start, head.start + n);
+            head.start += n;
+            size -= n;
+        }
+    }
+
+    private void removeLast(int n) {
+        while (n > 0 && n >= tail.count()) {
+            n -= tail.count();
+            size -= tail.count();
+            unlink(tail);
+        }
+        if (n > 0) {
+            clear(tail, tail.end - n, tail.end);
+            tail.end -= n;
+            size -= n;
+        }
+    }
+
+    /**
+     * LPOS search: positions of value, skipping the first |rank| - 1 matches
+     * and scanning from the tail when rank is negative. count == 0 means all
+     * matches, maxlen == 0 means compare every element.
+     */
+    public List<Integer> positions(String value, int rank, int count, int maxlen) {
+        PositionScan scan = new PositionScan(value, Math.abs(rank) - 1, count, maxlen);
+
+        if (pack != null) {
+            String[] items = pack.toArray();
+            for (int n = 0; n < items.length; n++) {
+                int i = rank > 0 ? n : items.length - 1 - n;
+                if (!scan.offer(items[i], i)) {
+                    break;
+                }
+            }
+            return scan.result;
+        }
+
+        if (rank > 0) {
+            int index = 0;
+            for (Node node = head; node != null; node = node.next) {
+                for (int i = node.start; i < node.end; i++, index++) {
+                    if (!scan.offer(node.items[i], index)) {
+                        return scan.result;
+                    }
+                }
+            }
+        } else {
+            int index = size - 1;
+            for (Node node = tail; node != null; node = node.prev) {
+                for (int i = node.end - 1; i >= node.start; i--, index--) {
+                    if (!scan.offer(node.items[i], index)) {
+                        return scan.result;
+                    }
+                }
+            }
+        }
+        return scan.result;
+    }
+
+    /**
+     * Whether a listpack of the given entry count can hold value.
+     */
+    private static boolean packFits(int entries, String value) {
+        if (entries > listpackMaxEntries) {
+            return false;
+        }
+        // Cheap bound before counting UTF-8 bytes: a char encodes to at most 3
+        return value.length() * 3 <= listpackMaxValue
+            || utf8Length(value) <= listpackMaxValue;
+    }
+
+    private static int utf8Length(String value) {
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Moves every element out of the listpack into nodes. One-way: a list
+     * that shrinks again stays a quicklist.
+     */
+    private void convert() {
+        String[] values = pack.toArray();
+        pack = null;
+        size = 0;
+        for (String value : values) {
+            addLast(value);
+        }
+    }
+
+    /**
+     * Inserts value so it ends up at the given offset within node, splitting
+     * the node in half when it is full.
+     */
+    private void insertAt(Node node, int offset, String value) {
+        if (node.count() == NODE_CAPACITY) {
+            Node right = new Node(0);
+            int half = NODE_CAPACITY / 2;
+            System.arraycopy(node.items, node.start + half, right.items, 0, NODE_CAPACITY - half);
+            clear(node, node.start + half, node.end);
+            right.end = NODE_CAPACITY - half;
+            node.end = node.start + half;
+
+            right.prev = node;
+            right.next = node.next;
+            if (node.next != null) {
+                node.next.prev = right;
+            } else {
+                tail = right;
+            }
+            node.next = right;
+
+            if (offset > half) {
+                node = right;
+                offset -= half;
+            }
+        }
+
+        node.ensureWritable();
+        int pos = node.start + offset;
+        if (node.end < NODE_CAPACITY) {
+            System.arraycopy(node.items, pos, node.items, pos + 1, node.end - pos);
+            node.end++;
+        } else {
+            // No room on the right; shift the left part one slot down
+            System.arraycopy(node.items, node.start, node.items, node.start - 1, offset);
+            node.start--;
+            pos--;
+        }
+        node.items[pos] = value;
+        size++;
+    }
+
+    /**
+     * Locates the node holding the given index, walking from whichever end is closer.
+     */
+    private Cursor seek(int index) {
+        if (index < size / 2) {
+            Node node = head;
+            int remaining = index;
+            while (remaining >= node.count()) {
+                remaining -= node.count();
+                node = node.next;
+            }
+            return new Cursor(node, remaining);
+        }
+
+        Node node = tail;
+        int remaining = size - 1 - index;
+        while (remaining >= node.count()) {
+            remaining -= node.count();
+            node = node.prev;
+        }
+        return new Cursor(node, node.count() - 1 - remaining);
+    }
+
+    /**
+     * Drops references to removed elements so they can be collected. Shared
+     * arrays are left alone: a reader may still be streaming those slots.
+     */
+    private static void clear(Node node, int from, int to) {
+        if (!node.shared) {
+            Arrays.fill(node.items, from, to, null);
+        }
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    static final class Node {
+        String[] items = new String[NODE_CAPACITY];
+        int start;  // index of first element
+        int end;    // index one past the last element
+        boolean shared;  // items is referenced by an in-flight reader
+        Node prev;
+        Node next;
+
+        Node(int position) {
+            this.start = position;
+            this.end = position;
+        }
+
+        int count() {
+            return end - start;
+        }
+
+        /**
+         * Copies items before an in-place edit if a reader may still hold it.
+         */
+        void ensureWritable() {
+            if (shared) {
+                items = items.clone();
+                shared = false;
+            }
+        }
+    }
+
+    /**
+     * A read-only view of items[from, to) in one node.
+     */
+    public static final class Segment {
+        final String[] items;
+        final int from;
+        final int to;
+
+        Segment(String[] items, int from, int to) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Match bookkeeping for LPOS, shared by both encodings.
+     */
+    private static final class PositionScan {
+        final List<Integer> result = new ArrayList<>();
+        final String value;
+        final int count;
+        final int maxlen;
+        int skip;
+        int scanned;
+
+        PositionScan(String value, int skip, int count, int maxlen) {
+            this.value = value;
+            this.skip = skip;
+            this.count = count;
+            this.maxlen = maxlen;
+        }
+
+        /**
+         * Looks at one element; returns false once the scan should stop.
+         */
+        boolean offer(String item, int index) {
+            if (maxlen > 0 && scanned++ >= maxlen) {
+                return false;
+            }
+            if (item.equals(value)) {
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    result.add(index);
+                    return count <= 0 || result.size() < count;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Cursor {
+        final Node node;
+        final int offset;  // offset relative to node.start
+
+        Cursor(Node node, int offset) {
+            this.node = node;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * QUIT: acknowledges with +OK; handleClient then closes the connection,
+ * which also drops the client's subscriptions.
+ */
+public class QuitCommandHandler extends BaseCommandHandler {
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        sendSimpleString(out, "OK");
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "QUIT";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false;
+    }
+}
@@ -33,8 +33,17 @@ public class ReplicationTracker {
     }
     
 
-    public void recordReplicaOffset(OutputStream replica, long offset) {
+    public synchronized void recordReplicaOffset(OutputStream replica, long offset) {
         replicaOffsets.put(replica, offset);
+        // Wake WAIT callers so they can recount acknowledgments
+        notifyAll();
+    }
+    
+    /**
+     * Wakes threads waiting on this tracker, e.g. when their deadline fires.
+     */
+    public synchronized void wakeWaiters() {
+        notifyAll();
     }
     
 
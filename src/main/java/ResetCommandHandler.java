@@ -0,0 +1,50 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * RESET: returns the connection to its default state. Any open MULTI and
+ * WATCHes are discarded, CLIENT TRACKING is turned off, and every channel,
+ * pattern and shard channel subscription is dropped, without the
+ * per-channel unsubscribe replies.
+ */
+public class ResetCommandHandler extends BaseCommandHandler {
+    private final PubSubContext pubSubContext;
+    private final TransactionContext transactionContext;
+    private final WatchedKeys watchedKeys;
+    private final ClientTracking clientTracking;
+    private final ClientTracking.Client trackingClient;
+    
+    public ResetCommandHandler(PubSubContext pubSubContext, TransactionContext transactionContext,
+                               WatchedKeys watchedKeys, ClientTracking clientTracking,
+                               ClientTracking.Client trackingClient) {
+        this.pubSubContext = pubSubContext;
+        this.transactionContext = transactionContext;
+        this.watchedKeys = watchedKeys;
+        this.clientTracking = clientTracking;
+        this.trackingClient = trackingClient;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length != 1) {
+            sendError(out, "wrong number of arguments for 'reset' command");
+            return;
+        }
+        
+        transactionContext.endTransaction();
+        transactionContext.unwatchAll(watchedKeys);
+        clientTracking.disable(trackingClient);
+        pubSubContext.clearSubscriptions();
+        sendSimpleString(out, "RESET");
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "RESET";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false;
+    }
+}
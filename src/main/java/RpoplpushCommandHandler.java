@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * RPOPLPUSH source destination, the same as LMOVE source destination RIGHT LEFT.
+ */
+public class RpoplpushCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public RpoplpushCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 3) {
+            sendError(out, "RPOPLPUSH requires source and destination");
+            return;
+        }
+        
+        PopResult moved = listStore.move(args[1], args[2], false, true);
+        if (moved == null) {
+            sendNullBulkString(out);
+            return;
+        }
+        sendBulkString(out, moved.values.get(0));
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "RPOPLPUSH";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // RPOPLPUSH modifies data
+    }
+}
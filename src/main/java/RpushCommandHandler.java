@@ -1,5 +1,6 @@
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 public class RpushCommandHandler extends BaseCommandHandler {
     private final ListStore listStore;
@@ -11,26 +12,16 @@ public class RpushCommandHandler extends BaseCommandHandler {
     @Override
     public void execute(String[] args, OutputStream out) throws IOException {
         if (args.length < 3) {
-            sendError(out, "RPUSH requires key and value");
+            sendError(out, "RPUSH requires key and at least one value");
             return;
         }
         
         String key = args[1];
-        String value = args[2];
+        String[] values = Arrays.copyOfRange(args, 2, args.length);
         
-        WakeUpResult result = listStore.rpush(key, value);
-        
-        if (result != null) {
-            // Someone was blocked waiting for this value
-            try {
-                sendBulkString(result.client.out, value);
-            } catch (IOException ignored) {}
-            sendInteger(out, 1);
-        } else {
-            // Normal push
-            int length = listStore.llen(key);
-            sendInteger(out, length);
-        }
+        // All values go in under one lock acquisition
+        PushResult result = listStore.rpush(key, values);
+        sendInteger(out, result.length);
     }
     
     @Override
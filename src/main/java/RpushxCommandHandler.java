@@ -0,0 +1,36 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class RpushxCommandHandler extends BaseCommandHandler {
+    private final ListStore listStore;
+    
+    public RpushxCommandHandler(ListStore listStore) {
+        this.listStore = listStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 3) {
+            sendError(out, "RPUSHX requires key and at least one value");
+            return;
+        }
+        
+        String key = args[1];
+        String[] values = Arrays.copyOfRange(args, 2, args.length);
+        
+        // Only pushes when the list already exists; length 0 otherwise
+        PushResult result = listStore.push(key, values, false, true);
+        sendInteger(out, result.length);
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "RPUSHX";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // RPUSHX modifies data
+    }
+}
\ No newline at end of file
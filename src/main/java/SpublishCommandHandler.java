@@ -0,0 +1,44 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * SPUBLISH: delivers only to SSUBSCRIBE subscribers of the shard channel,
+ * never to pattern subscribers. Without cluster mode every shard channel
+ * belongs to this node.
+ */
+public class SpublishCommandHandler extends BaseCommandHandler {
+    private final PubSubManager pubSubManager;
+    private final CommandPropagator propagator;
+    
+    public SpublishCommandHandler(PubSubManager pubSubManager, CommandPropagator propagator) {
+        this.pubSubManager = pubSubManager;
+        this.propagator = propagator;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length != 3) {
+            sendError(out, "wrong number of arguments for 'spublish' command");
+            return;
+        }
+        
+        String shardChannel = args[1];
+        String message = args[2];
+        
+        int receivers = pubSubManager.spublish(shardChannel, message);
+        
+        // Not a write, but replicas deliver it to their own subscribers
+        propagator.alsoPropagate("SPUBLISH", shardChannel, message);
+        sendInteger(out, receivers);
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "SPUBLISH";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+
+public class SsubscribeCommandHandler extends BaseCommandHandler {
+    private final PubSubContext pubSubContext;
+    
+    public SsubscribeCommandHandler(PubSubContext pubSubContext) {
+        this.pubSubContext = pubSubContext;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 2) {
+            sendError(out, "wrong number of arguments for 'ssubscribe' command");
+            return;
+        }
+        
+        // Subscribe to each shard channel specified
+        for (int i = 1; i < args.length; i++) {
+            String shardChannel = args[i];
+            pubSubContext.ssubscribe(shardChannel);
+            sendSsubscribeResponse(out, shardChannel, pubSubContext.getShardSubscriptionCount());
+        }
+    }
+    
+    private void sendSsubscribeResponse(OutputStream out, String shardChannel, int count) throws IOException {
+        StringBuilder response = new StringBuilder();
+        
+        response.append("*3\r\n");
+        
+        response.append("$10\r\nssubscribe\r\n");
+        
+        response.append("$").append(shardChannel.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
+        response.append(shardChannel).append("\r\n");
+        
+        response.append(":").append(count).append("\r\n");
+        
+        out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "SSUBSCRIBE";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; 
+    }
+}
@@ -0,0 +1,549 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entries of one stream, ordered by ID.
+ *
+ * Entries are packed into StreamNode macro-nodes of up to
+ * StreamNode.CAPACITY entries, whose IDs are primitive deltas against the
+ * node's master ID. A lookup is a binary search over nodes followed by one
+ * inside the node: O(log n) with no ID parsing or allocation while seeking.
+ * Entries are only ever appended at the tail and decoded on read.
+ *
+ * Trimming from the head drops whole nodes in O(1) each and, when exact,
+ * advances the first node's start offset. XDEL leaves a tombstone so IDs
+ * stay searchable; a node whose entries are all deleted is unlinked.
+ * Length and the XINFO counters are maintained incrementally.
+ *
+ * When a hot window is configured (see StreamSegments), sealed nodes whose
+ * newest entry is older than the window are moved to memory-mapped segment
+ * files as new nodes are started; reads decode them transparently.
+ *
+ * Writes must be serialized by the caller (StreamStore's lock). Reads
+ * (range, reverseRange, after, get, length) need no lock: every write ends
+ * by publishing an immutable View through a volatile field, and readers
+ * work on the View they loaded. A View never looks past the tail count it
+ * was published with, and the node array is only appended to in place;
+ * removing nodes or compacting makes a new array, so a reader's View stays
+ * valid for as long as the reader holds it.
+ */
+public class StreamLog {
+    private volatile View view = View.EMPTY;
+
+    // Writer state, published through view
+    private StreamNode[] nodes = new StreamNode[4];
+    private int head;  // nodes[head, size) are live
+    private int size;
+    private int firstStart;
+    private int length;
+    private int hotFrom;  // nodes[head, hotFrom) have been considered for offloading
+    private StreamSegments segments;  // created when the first node goes cold
+
+    private long lastMs;
+    private long lastSeq;
+    private long maxDeletedMs;
+    private long maxDeletedSeq;
+    private long entriesAdded;
+    private Map<String, ConsumerGroup> groups;  // created on first XGROUP CREATE
+
+    public int length() {
+        return view.length;
+    }
+
+    public boolean isEmpty() {
+        return view.length == 0;
+    }
+
+    public long lastMs() {
+        return lastMs;
+    }
+
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    public String lastId() {
+        return lastMs + "-" + lastSeq;
+    }
+
+    /**
+     * Largest ID removed by XDEL or trimming, 0-0 if none.
+     */
+    public String maxDeletedId() {
+        return maxDeletedMs + "-" + maxDeletedSeq;
+    }
+
+    public long entriesAdded() {
+        return entriesAdded;
+    }
+
+    public int nodeCount() {
+        return size - head;
+    }
+
+    /**
+     * Appends an entry. The caller has checked that (ms, seq) is greater
+     * than the current last ID.
+     */
+    public void append(long ms, long seq, Map<String, String> fields) {
+        StreamNode tail = size == head ? null : nodes[size - 1];
+        if (tail != null && tail.fits(ms, seq)) {
+            byte[] encoded = tail.encode(fields);
+            if (!tail.hasRoom(encoded.length)) {
+                if (tail.isCold()) {
+                    segments.release(tail.region);
+                }
+                tail = tail.grow(encoded.length);
+                nodes[size - 1] = tail;
+            }
+            tail.append(ms, seq, encoded);
+        } else {
+            if (tail != null) {
+                nodes[size - 1] = tail.seal();
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            nodes[size++] = new StreamNode(ms, seq, fields);
+            offloadCold();
+        }
+        length++;
+        entriesAdded++;
+        lastMs = ms;
+        lastSeq = seq;
+        publish();
+    }
+
+    /**
+     * Entries with start <= ID <= end.
+     */
+    public List<StreamEntry> range(long startMs, long startSeq, long endMs, long endSeq) {
+        return range(startMs, startSeq, endMs, endSeq, 0);
+    }
+
+    /**
+     * Entries with start <= ID <= end, at most count of them (0 = no limit).
+     */
+    public List<StreamEntry> range(long startMs, long startSeq, long endMs, long endSeq, int count) {
+        View v = view;
+        List<StreamEntry> result = new ArrayList<>();
+        int limit = count > 0 ? count : Integer.MAX_VALUE;
+        if (compare(startMs, startSeq, endMs, endSeq) > 0) {
+            return result;
+        }
+
+        int c = v.seekNode(startMs, startSeq);
+        if (c == v.nodeCount()) {
+            return result;
+        }
+        int i = v.node(c).seek(startMs, startSeq, v.start(c), v.end(c));
+        for (; c < v.nodeCount(); c++) {
+            StreamNode node = v.node(c);
+            if (i < 0) {
+                i = v.start(c);
+            }
+            for (int end = v.end(c); i < end; i++) {
+                if (result.size() == limit || compare(node.ms(i), node.seq(i), endMs, endSeq) > 0) {
+                    return result;
+                }
+                StreamEntry entry = node.entry(i);
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+            i = -1;
+        }
+        return result;
+    }
+
+    /**
+     * Entries with start <= ID <= end in descending ID order, at most count
+     * of them (0 = no limit), as XREVRANGE wants. Seeks to end and walks
+     * backwards, so the cost is O(log n + count).
+     */
+    public List<StreamEntry> reverseRange(long endMs, long endSeq, long startMs, long startSeq, int count) {
+        View v = view;
+        List<StreamEntry> result = new ArrayList<>();
+        int limit = count > 0 ? count : Integer.MAX_VALUE;
+        if (v.nodeCount() == 0 || compare(startMs, startSeq, endMs, endSeq) > 0) {
+            return result;
+        }
+
+        // Last slot <= end: the seek slot if it matches exactly, else the one before it
+        int c = v.seekNode(endMs, endSeq);
+        int i;
+        if (c == v.nodeCount()) {
+            c--;
+            i = v.end(c) - 1;
+        } else {
+            StreamNode node = v.node(c);
+            i = node.seek(endMs, endSeq, v.start(c), v.end(c));
+            if (node.ms(i) != endMs || node.seq(i) != endSeq) {
+                i--;
+            }
+        }
+        for (; c >= 0; c--) {
+            StreamNode node = v.node(c);
+            if (i == Integer.MIN_VALUE) {
+                i = v.end(c) - 1;
+            }
+            for (int start = v.start(c); i >= start; i--) {
+                if (result.size() == limit || compare(node.ms(i), node.seq(i), startMs, startSeq) < 0) {
+                    return result;
+                }
+                StreamEntry entry = node.entry(i);
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+            i = Integer.MIN_VALUE;
+        }
+        return result;
+    }
+
+    /**
+     * Up to count entries with ID strictly greater than (ms, seq), as XREAD
+     * wants (0 = no limit).
+     */
+    public List<StreamEntry> after(long ms, long seq, int count) {
+        if (seq == Long.MAX_VALUE) {
+            if (ms == Long.MAX_VALUE) {
+                return new ArrayList<>();
+            }
+            return range(ms + 1, 0, Long.MAX_VALUE, Long.MAX_VALUE, count);
+        }
+        return range(ms, seq + 1, Long.MAX_VALUE, Long.MAX_VALUE, count);
+    }
+
+    /**
+     * The entry with exactly this ID, or null if there is none.
+     */
+    public StreamEntry get(long ms, long seq) {
+        View v = view;
+        int c = v.seekNode(ms, seq);
+        if (c == v.nodeCount()) {
+            return null;
+        }
+        StreamNode node = v.node(c);
+        int i = node.seek(ms, seq, v.start(c), v.end(c));
+        return i < v.end(c) && node.ms(i) == ms && node.seq(i) == seq ? node.entry(i) : null;
+    }
+
+    public StreamEntry firstEntry() {
+        View v = view;
+        for (int c = 0; c < v.nodeCount(); c++) {
+            StreamNode node = v.node(c);
+            for (int i = v.start(c), end = v.end(c); i < end; i++) {
+                if (!node.isDeleted(i)) {
+                    return node.entry(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    public StreamEntry lastEntry() {
+        View v = view;
+        for (int c = v.nodeCount() - 1; c >= 0; c--) {
+            StreamNode node = v.node(c);
+            for (int i = v.end(c) - 1, start = v.start(c); i >= start; i--) {
+                if (!node.isDeleted(i)) {
+                    return node.entry(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * XDEL: tombstones the entry with this ID. Returns false if there is none.
+     */
+    public boolean delete(long ms, long seq) {
+        int c = seekNode(ms, seq);
+        if (c == nodeCount()) {
+            return false;
+        }
+        StreamNode node = node(c);
+        int i = node.seek(ms, seq, c == 0 ? firstStart : 0, node.count);
+        if (i == node.count || node.ms(i) != ms || node.seq(i) != seq || node.isDeleted(i)) {
+            return false;
+        }
+        node.delete(i);
+        node.live--;
+        length--;
+        recordDeleted(ms, seq);
+        if (node.live == 0) {
+            removeNode(c);
+        }
+        publish();
+        return true;
+    }
+
+    /**
+     * Trims oldest entries until at most maxLen remain. Approximate trimming
+     * only drops whole nodes, so it may leave up to a node more than
+     * maxLen. At most limit entries are evicted (0 = no limit). Returns the
+     * number of entries removed.
+     */
+    public long trimToLength(long maxLen, boolean approximate, long limit) {
+        long removed = 0;
+        long budget = limit > 0 ? limit : Long.MAX_VALUE;
+        while (nodeCount() > 0 && length - node(0).live >= maxLen && removed + node(0).live <= budget) {
+            removed += dropFirstNode();
+        }
+        if (!approximate) {
+            while (length > maxLen && removed < budget) {
+                removed += removeFirstEntry();
+            }
+        }
+        publish();
+        return removed;
+    }
+
+    /**
+     * Trims entries with ID below (minMs, minSeq), with the same
+     * approximate / limit rules as trimToLength.
+     */
+    public long trimBelow(long minMs, long minSeq, boolean approximate, long limit) {
+        long removed = 0;
+        long budget = limit > 0 ? limit : Long.MAX_VALUE;
+        while (nodeCount() > 0 && removed + node(0).live <= budget) {
+            StreamNode first = node(0);
+            int last = first.count - 1;
+            if (compare(first.ms(last), first.seq(last), minMs, minSeq) >= 0) {
+                break;
+            }
+            removed += dropFirstNode();
+        }
+        if (!approximate) {
+            while (nodeCount() > 0 && removed < budget) {
+                StreamNode first = node(0);
+                if (compare(first.ms(firstStart), first.seq(firstStart), minMs, minSeq) >= 0) {
+                    break;
+                }
+                removed += removeFirstEntry();
+            }
+        }
+        publish();
+        return removed;
+    }
+
+    public ConsumerGroup group(String name) {
+        return groups == null ? null : groups.get(name);
+    }
+
+    public void addGroup(ConsumerGroup group) {
+        if (groups == null) {
+            groups = new LinkedHashMap<>();
+        }
+        groups.put(group.name, group);
+    }
+
+    public boolean removeGroup(String name) {
+        return groups != null && groups.remove(name) != null;
+    }
+
+    public Collection<ConsumerGroup> groups() {
+        return groups == null ? List.of() : groups.values();
+    }
+
+    private StreamNode node(int index) {
+        return nodes[head + index];
+    }
+
+    /**
+     * Moves sealed nodes that fell out of the hot window to segment files.
+     * Nodes are replaced in place: the cold copy has the same IDs and
+     * final fields, so a reader that still sees the hot one is unaffected.
+     */
+    private void offloadCold() {
+        long windowMs = StreamSegments.hotWindowMs();
+        if (windowMs == 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - windowMs;
+        hotFrom = Math.max(hotFrom, head);
+        while (hotFrom < size - 1) {
+            StreamNode node = nodes[hotFrom];
+            if (node.ms(node.count - 1) >= cutoff) {
+                return;
+            }
+            if (!node.isCold()) {
+                if (segments == null) {
+                    segments = new StreamSegments();
+                }
+                StreamNode cold = node.offload(segments);
+                if (cold == node) {
+                    return;  // segment file unavailable; keep it on the heap
+                }
+                nodes[hotFrom] = cold;
+            }
+            hotFrom++;
+        }
+    }
+
+    private void publish() {
+        int tailCount = size == head ? 0 : nodes[size - 1].count;
+        view = new View(nodes, head, size, firstStart, tailCount, length);
+    }
+
+    /**
+     * Unlinks the first node and returns how many live entries it held.
+     */
+    private int dropFirstNode() {
+        StreamNode first = node(0);
+        int last = first.count - 1;
+        recordDeleted(first.ms(last), first.seq(last));
+        length -= first.live;
+        release(first);
+        head++;
+        firstStart = 0;
+        // Compact into a fresh array (readers may still hold this one) once
+        // the dropped prefix dominates, keeping drops O(1) amortized
+        if (head > 16 && head * 2 > size) {
+            nodes = Arrays.copyOfRange(nodes, head, head + Math.max(size, 4));
+            size -= head;
+            hotFrom = Math.max(hotFrom - head, 0);
+            head = 0;
+        }
+        return first.live;
+    }
+
+    /**
+     * Removes the entry (or tombstone) at the start of the first node.
+     * Returns 1 if it was a live entry.
+     */
+    private int removeFirstEntry() {
+        StreamNode first = node(0);
+        int i = firstStart;
+        boolean live = !first.isDeleted(i);
+        recordDeleted(first.ms(i), first.seq(i));
+        first.delete(i);
+        firstStart++;
+        if (live) {
+            first.live--;
+            length--;
+        }
+        if (firstStart == first.count) {
+            dropFirstNode();
+        }
+        return live ? 1 : 0;
+    }
+
+    private void removeNode(int index) {
+        if (index == 0) {
+            dropFirstNode();
+            return;
+        }
+        release(node(index));
+        StreamNode[] copy = new StreamNode[nodes.length];
+        System.arraycopy(nodes, head, copy, 0, index);
+        System.arraycopy(nodes, head + index + 1, copy, index, size - head - index - 1);
+        size -= head + 1;
+        hotFrom = Math.max(hotFrom - head - (hotFrom > head + index ? 1 : 0), 0);
+        hotFrom = Math.min(hotFrom, Math.max(size - 1, 0));  // a new tail is reconsidered once sealed
+        head = 0;
+        nodes = copy;
+    }
+
+    private void release(StreamNode node) {
+        if (node.isCold()) {
+            segments.release(node.region);
+        }
+    }
+
+    private void recordDeleted(long ms, long seq) {
+        if (compare(ms, seq, maxDeletedMs, maxDeletedSeq) > 0) {
+            maxDeletedMs = ms;
+            maxDeletedSeq = seq;
+        }
+    }
+
+    /**
+     * Writer-side seekNode over the current (possibly unpublished) state.
+     */
+    private int seekNode(long ms, long seq) {
+        int lo = 0;
+        int hi = nodeCount();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            StreamNode node = node(mid);
+            int last = node.count - 1;
+            if (compare(node.ms(last), node.seq(last), ms, seq) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    static int compare(long ms1, long seq1, long ms2, long seq2) {
+        int c = Long.compare(ms1, ms2);
+        return c != 0 ? c : Long.compare(seq1, seq2);
+    }
+
+    /**
+     * What a reader may see: nodes[head, size), the first node starting at
+     * firstStart and the last one holding tailCount slots.
+     */
+    private static final class View {
+        static final View EMPTY = new View(new StreamNode[0], 0, 0, 0, 0, 0);
+
+        final StreamNode[] nodes;
+        final int head;
+        final int size;
+        final int firstStart;
+        final int tailCount;
+        final int length;
+
+        View(StreamNode[] nodes, int head, int size, int firstStart, int tailCount, int length) {
+            this.nodes = nodes;
+            this.head = head;
+            this.size = size;
+            this.firstStart = firstStart;
+            this.tailCount = tailCount;
+            this.length = length;
+        }
+
+        int nodeCount() {
+            return size - head;
+        }
+
+        StreamNode node(int index) {
+            return nodes[head + index];
+        }
+
+        int start(int index) {
+            return index == 0 ? firstStart : 0;
+        }
+
+        int end(int index) {
+            return index == size - head - 1 ? tailCount : nodes[head + index].sealedCount;
+        }
+
+        /**
+         * Index of the first node whose last ID is >= (ms, seq), or
+         * nodeCount() if every entry is smaller.
+         */
+        int seekNode(long ms, long seq) {
+            int lo = 0;
+            int hi = nodeCount();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int last = end(mid) - 1;
+                StreamNode node = node(mid);
+                if (compare(node.ms(last), node.seq(last), ms, seq) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A macro-node of up to CAPACITY stream entries, encoded compactly.
+ *
+ * IDs are stored as int deltas against the node's master ID (its first
+ * entry): the millisecond delta, and the sequence delta when the
+ * millisecond matches the master's or the raw sequence otherwise. An entry
+ * whose delta does not fit in an int starts a new node.
+ *
+ * Field/value pairs live in one byte array. The first entry's field names
+ * become the master fields; every entry with the same names stores only its
+ * values, so a stream of uniform entries keeps each field name once per
+ * node instead of once per entry. Each entry is encoded as
+ *
+ *   [0] [value]...             fields equal to the master fields
+ *   [n] [field][value]... x n  its own n fields
+ *
+ * where counts and string lengths are varints and strings are UTF-8.
+ * Entries are decoded into StreamEntry objects on read.
+ *
+ * Lock-free readers (see StreamLog) may read a node while the writer
+ * appends to it, so the arrays are final and never resized in place:
+ * growing or sealing a node makes a copy, and a reader only looks at slots
+ * below the count published with its view (or, for a node that is no
+ * longer the tail, the final sealedCount). Slots are written before that
+ * publication and never change afterwards, except for deleted flags.
+ *
+ * A sealed node that falls out of the hot window is replaced by a cold
+ * copy whose data lives in a memory-mapped StreamSegments region instead of
+ * on the heap; IDs and offsets stay on the heap so seeks do not touch it.
+ */
+final class StreamNode {
+    static final int CAPACITY = 256;
+    private static final int INITIAL_ENTRIES = 8;
+    private static final int INITIAL_BYTES = 128;
+
+    final long masterMs;
+    final long masterSeq;
+    private final String[] masterFields;
+    private final int[] msDelta;
+    private final int[] seqDelta;
+    private final int[] ends;  // end offset of each entry in data
+    private final boolean[] deleted;
+    private final byte[] data;        // null once cold
+    private final ByteBuffer cold;    // read-only mapped data, or null while hot
+    final StreamSegments.Region region;
+    final int sealedCount;            // slots of a sealed node, -1 for the tail
+    private int used;
+
+    int count;  // slots used; readers use sealedCount or their view's tail count
+    int live;   // non-deleted entries, maintained by the writer
+
+    StreamNode(long ms, long seq, Map<String, String> fields) {
+        masterMs = ms;
+        masterSeq = seq;
+        masterFields = fields.keySet().toArray(new String[0]);
+        byte[] encoded = encode(fields);
+        msDelta = new int[INITIAL_ENTRIES];
+        seqDelta = new int[INITIAL_ENTRIES];
+        ends = new int[INITIAL_ENTRIES];
+        deleted = new boolean[INITIAL_ENTRIES];
+        data = new byte[Math.max(INITIAL_BYTES, encoded.length)];
+        cold = null;
+        region = null;
+        sealedCount = -1;
+        append(ms, seq, encoded);
+    }
+
+    /**
+     * Copy of a hot source with room for the given number of entries and
+     * bytes; sealed copies never grow again.
+     */
+    private StreamNode(StreamNode source, int entries, int bytes, boolean sealed) {
+        masterMs = source.masterMs;
+        masterSeq = source.masterSeq;
+        masterFields = source.masterFields;
+        msDelta = Arrays.copyOf(source.msDelta, entries);
+        seqDelta = Arrays.copyOf(source.seqDelta, entries);
+        ends = Arrays.copyOf(source.ends, entries);
+        deleted = Arrays.copyOf(source.deleted, entries);
+        data = Arrays.copyOf(source.data, bytes);
+        cold = null;
+        region = null;
+        sealedCount = sealed ? source.count : -1;
+        used = source.used;
+        count = source.count;
+        live = source.live;
+    }
+
+    /**
+     * Cold copy of a sealed source, sharing its ID arrays.
+     */
+    private StreamNode(StreamNode source, ByteBuffer cold, StreamSegments.Region region) {
+        masterMs = source.masterMs;
+        masterSeq = source.masterSeq;
+        masterFields = source.masterFields;
+        msDelta = source.msDelta;
+        seqDelta = source.seqDelta;
+        ends = source.ends;
+        deleted = source.deleted;
+        data = null;
+        this.cold = cold;
+        this.region = region;
+        sealedCount = source.sealedCount;
+        used = source.used;
+        count = source.count;
+        live = source.live;
+    }
+
+    /**
+     * Hot copy of a cold source, sharing its ID arrays.
+     */
+    private StreamNode(StreamNode source, byte[] data) {
+        masterMs = source.masterMs;
+        masterSeq = source.masterSeq;
+        masterFields = source.masterFields;
+        msDelta = source.msDelta;
+        seqDelta = source.seqDelta;
+        ends = source.ends;
+        deleted = source.deleted;
+        this.data = data;
+        cold = null;
+        region = null;
+        sealedCount = source.sealedCount;
+        used = source.used;
+        count = source.count;
+        live = source.live;
+    }
+
+    /**
+     * Whether an entry with this ID (greater than every ID in the node) may
+     * go into this node.
+     */
+    boolean fits(long ms, long seq) {
+        if (count == CAPACITY || ms - masterMs > Integer.MAX_VALUE) {
+            return false;
+        }
+        return (ms == masterMs ? seq - masterSeq : seq) <= Integer.MAX_VALUE;
+    }
+
+    boolean hasRoom(int bytes) {
+        return data != null && count < msDelta.length && used + bytes <= data.length;
+    }
+
+    /**
+     * A copy with room for one more entry of the given encoded size.
+     */
+    StreamNode grow(int bytes) {
+        int entries = count < msDelta.length ? msDelta.length : Math.min(count * 2, CAPACITY);
+        if (data == null) {
+            // A cold node that became the tail again (XDEL emptied the one after it)
+            return new StreamNode(thaw(), entries, Math.max(used * 2, used + bytes), false);
+        }
+        return new StreamNode(this, entries, Math.max(data.length * 2, used + bytes), false);
+    }
+
+    /**
+     * A copy without spare capacity, for a node that is no longer the tail.
+     */
+    StreamNode seal() {
+        return data == null ? this : new StreamNode(this, count, used, true);
+    }
+
+    boolean isCold() {
+        return data == null;
+    }
+
+    /**
+     * A cold copy of this sealed node with its data moved into segments, or
+     * this node if the data could not be written there.
+     */
+    StreamNode offload(StreamSegments segments) {
+        ByteBuffer mapped = segments.write(data, used);
+        return mapped == null ? this : new StreamNode(this, mapped, segments.current());
+    }
+
+    /**
+     * A hot sealed copy of a cold node.
+     */
+    private StreamNode thaw() {
+        byte[] bytes = new byte[used];
+        cold.get(0, bytes);
+        return new StreamNode(this, bytes);
+    }
+
+    /**
+     * Encodes fields against this node's master fields, for append.
+     */
+    byte[] encode(Map<String, String> fields) {
+        Encoder encoder = new Encoder();
+        if (hasMasterFields(fields)) {
+            encoder.writeVarint(0);
+            for (String value : fields.values()) {
+                encoder.writeString(value);
+            }
+        } else {
+            encoder.writeVarint(fields.size());
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                encoder.writeString(field.getKey());
+                encoder.writeString(field.getValue());
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Appends an entry encoded by encode(). The caller has checked fits()
+     * and hasRoom().
+     */
+    void append(long ms, long seq, byte[] encoded) {
+        msDelta[count] = (int) (ms - masterMs);
+        seqDelta[count] = (int) (ms == masterMs ? seq - masterSeq : seq);
+        System.arraycopy(encoded, 0, data, used, encoded.length);
+        used += encoded.length;
+        ends[count] = used;
+        count++;
+        live++;
+    }
+
+    long ms(int i) {
+        return masterMs + msDelta[i];
+    }
+
+    long seq(int i) {
+        return msDelta[i] == 0 ? masterSeq + seqDelta[i] : seqDelta[i];
+    }
+
+    boolean isDeleted(int i) {
+        return deleted[i];
+    }
+
+    void delete(int i) {
+        deleted[i] = true;
+    }
+
+    /**
+     * Decodes the entry in slot i, or returns null if it was deleted.
+     */
+    StreamEntry entry(int i) {
+        if (deleted[i]) {
+            return null;
+        }
+        int[] pos = {i == 0 ? 0 : ends[i - 1]};
+        int pairs = readVarint(pos);
+        Map<String, String> fields;
+        if (pairs == 0) {
+            fields = new LinkedHashMap<>(masterFields.length * 2);
+            for (String field : masterFields) {
+                fields.put(field, readString(pos));
+            }
+        } else {
+            fields = new LinkedHashMap<>(pairs * 2);
+            for (int p = 0; p < pairs; p++) {
+                String field = readString(pos);
+                fields.put(field, readString(pos));
+            }
+        }
+        return StreamEntry.decoded(ms(i), seq(i), fields);
+    }
+
+    /**
+     * Offset of the first slot >= (ms, seq) in [from, to), or to if none.
+     */
+    int seek(long targetMs, long targetSeq, int from, int to) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (StreamLog.compare(ms(mid), seq(mid), targetMs, targetSeq) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private boolean hasMasterFields(Map<String, String> fields) {
+        if (fields.size() != masterFields.length) {
+            return false;
+        }
+        int i = 0;
+        for (String field : fields.keySet()) {
+            if (!field.equals(masterFields[i++])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readString(int[] pos) {
+        int length = readVarint(pos);
+        String value;
+        if (data != null) {
+            value = new String(data, pos[0], length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            cold.get(pos[0], bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        pos[0] += length;
+        return value;
+    }
+
+    private int readVarint(int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data != null ? data[pos[0]++] : cold.get(pos[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static final class Encoder extends ByteArrayOutputStream {
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RESP encoding of stream entries, shared by the stream commands and by
+ * blocked XREAD / XREADGROUP clients answered from XADD.
+ */
+final class StreamReply {
+    private StreamReply() {}
+
+    /**
+     * [[key, [entries]], ...] as returned by XREAD and XREADGROUP.
+     */
+    static void appendStreams(StringBuilder sb, List<StreamResult> results) {
+        sb.append("*").append(results.size()).append("\r\n");
+        for (StreamResult result : results) {
+            sb.append("*2\r\n");
+            appendBulk(sb, result.key);
+            appendEntries(sb, result.entries);
+        }
+    }
+
+    /**
+     * [[id, [field, value, ...]], ...]; a deleted entry has nil fields.
+     */
+    static void appendEntries(StringBuilder sb, List<StreamEntry> entries) {
+        sb.append("*").append(entries.size()).append("\r\n");
+        for (StreamEntry entry : entries) {
+            appendEntry(sb, entry);
+        }
+    }
+
+    static void appendEntry(StringBuilder sb, StreamEntry entry) {
+        sb.append("*2\r\n");
+        appendBulk(sb, entry.getId());
+        Map<String, String> fields = entry.getFields();
+        if (fields == null) {
+            sb.append("*-1\r\n");
+            return;
+        }
+        sb.append("*").append(fields.size() * 2).append("\r\n");
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            appendBulk(sb, field.getKey());
+            appendBulk(sb, field.getValue());
+        }
+    }
+
+    static void appendIds(StringBuilder sb, List<StreamEntry> entries) {
+        sb.append("*").append(entries.size()).append("\r\n");
+        for (StreamEntry entry : entries) {
+            appendBulk(sb, entry.getId());
+        }
+    }
+
+    static void appendBulk(StringBuilder sb, String value) {
+        BaseCommandHandler.appendBulk(sb, value);
+    }
+}
@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cold storage for one stream: the encoded entry data of nodes that fell
+ * out of the hot window is moved into memory-mapped region files in the
+ * RDB directory, so it lives in the page cache instead of on the heap.
+ *
+ * Regions are written append-only, one node after another, and a node
+ * keeps a read-only slice of its region. A region file is deleted once
+ * every node in it has been trimmed away; the mapping itself goes away
+ * when the last slice is collected, so a reader still holding one is
+ * unaffected. The files are scratch space, not persistence: any left in
+ * the directory by an earlier run are deleted when the server starts.
+ *
+ * Not thread-safe: StreamStore's lock guards the writer side.
+ */
+final class StreamSegments {
+    static final int REGION_BYTES = 8 << 20;
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private static volatile String dir = new RDBConfig().getDir();
+    private static volatile long hotWindowMs;  // 0 = keep every node on the heap
+
+    private final long id = NEXT_ID.incrementAndGet();
+    private int regions;
+    private Region current;
+
+    /**
+     * Called once at startup, before any stream goes cold.
+     */
+    static void configure(String directory, long windowMs) {
+        dir = directory;
+        hotWindowMs = Math.max(windowMs, 0);
+        deleteStale();
+    }
+
+    private static void deleteStale() {
+        Path directory = Paths.get(dir);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "stream-*.seg")) {
+            for (Path path : stale) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot clean stream segments in " + dir + ": " + e.getMessage());
+        }
+    }
+
+    static long hotWindowMs() {
+        return hotWindowMs;
+    }
+
+    /**
+     * Copies len bytes of data into the current region (opening a new one
+     * if it is full) and returns a read-only view of them, or null if the
+     * region file could not be created.
+     */
+    ByteBuffer write(byte[] data, int len) {
+        if (current == null || current.used + len > current.buffer.capacity()) {
+            Region next = open(Math.max(REGION_BYTES, len));
+            if (next == null) {
+                return null;
+            }
+            if (current != null && current.nodes == 0) {
+                current.delete();
+            }
+            current = next;
+        }
+        Region region = current;
+        region.buffer.put(region.used, data, 0, len);
+        ByteBuffer slice = region.buffer.slice(region.used, len).asReadOnlyBuffer();
+        region.used += len;
+        region.nodes++;
+        return slice;
+    }
+
+    Region current() {
+        return current;
+    }
+
+    /**
+     * Called when a node stored in region is dropped from the stream.
+     */
+    void release(Region region) {
+        if (--region.nodes == 0) {
+            if (region == current) {
+                current = null;
+            }
+            region.delete();
+        }
+    }
+
+    private Region open(int size) {
+        Path path = Paths.get(dir, "stream-" + ProcessHandle.current().pid() + "-" + id + "-" + regions++ + ".seg");
+        try {
+            Files.createDirectories(path.getParent());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                return new Region(path, buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot create stream segment " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static final class Region {
+        final Path path;
+        final MappedByteBuffer buffer;
+        int used;
+        int nodes;
+
+        Region(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("Cannot delete stream segment " + path + ": " + e.getMessage());
+            }
+        }
+    }
+}
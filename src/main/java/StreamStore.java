@@ -1,139 +1,901 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Stream keys and their consumer groups and blocked readers.
+ *
+ * Writes and anything touching groups or waiters synchronize on the store.
+ * Plain reads (XRANGE, XREVRANGE, non-blocking XREAD, XLEN) take no lock:
+ * they read the snapshot StreamLog publishes after each write, so a large
+ * range scan never stalls XADD on any stream.
+ */
 public class StreamStore {
-    private final ConcurrentHashMap<String, List<StreamEntry>> streams = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StreamLog> streams = new ConcurrentHashMap<>();
+    // XREAD / XREADGROUP BLOCK clients per stream key; guarded by this
+    private final Map<String, List<StreamWaiter>> waiters = new HashMap<>();
+    // Keys XADDed to while clients waited on them, kept per thread until
+    // serveBlocked runs after the command
+    private final ThreadLocal<Deque<String>> readyKeys = ThreadLocal.withInitial(ArrayDeque::new);
+    private final HashedWheelTimer timer;
+    private final KeyspaceNotifier notifier;
+    private final KeyLocks keyLocks;
 
-    public synchronized String xadd(String key, String entryId, Map<String, String> fields) {
-        String actualEntryId = entryId;
+    public StreamStore(HashedWheelTimer timer, KeyspaceNotifier notifier, KeyLocks keyLocks) {
+        this.timer = timer;
+        this.notifier = notifier;
+        this.keyLocks = keyLocks;
+    }
+
+    /**
+     * Appends an entry. The clients blocked on key that it unblocks (every
+     * XREAD whose start ID it passes, and per consumer group the first
+     * XREADGROUP in line) are served by serveBlocked once the command is
+     * over.
+     */
+    public synchronized XaddResult xadd(String key, String entryId, Map<String, String> fields) {
+        return xadd(key, entryId, fields, null, false);
+    }
 
-        if(entryId.equals("*")) {
-            long timeMs = System.currentTimeMillis();
-            actualEntryId = timeMs + "-0";
+    /**
+     * XADD with an optional trimming clause (applied right after the
+     * append) and NOMKSTREAM, which leaves a missing key alone and returns
+     * a null ID.
+     */
+    public synchronized XaddResult xadd(String key, String entryId, Map<String, String> fields,
+                                        StreamTrim trim, boolean noMkStream) {
+        if (noMkStream && !streams.containsKey(key)) {
+            return new XaddResult(null);
+        }
+        if (trim != null && trim.byMinId) {
+            parseReadId(trim.minId);  // reject a bad threshold before appending
+        }
+        String actualEntryId = append(key, entryId, fields);
+        notifier.notify(KeyspaceNotifier.STREAM, "xadd", key);
+        if (trim != null && trim(streams.get(key), trim) > 0) {
+            notifier.notify(KeyspaceNotifier.STREAM, "xtrim", key);
         }
-        else if (entryId.contains("-*")) {
-            String[] parts = entryId.split("-");
-            long timeMs = Long.parseLong(parts[0]);
+        if (waiters.containsKey(key)) {
+            readyKeys.get().add(key);
+        }
+        return new XaddResult(actualEntryId);
+    }
 
-            List<StreamEntry> stream = streams.get(key);
-            
-            long sequence;
-            if (stream == null || stream.isEmpty()) {
-                if (timeMs == 0) {
-                    sequence = 1;
-                } else {
-                    sequence = 0;
+    /**
+     * Serves the clients waiting on streams this thread's last command (or
+     * EXEC) added to, sending their replies and queueing XREADGROUP
+     * deliveries on propagator. Must be called once the command has
+     * released its KeyLocks, so a transaction never sees its own entries
+     * delivered before it ends.
+     */
+    public void serveBlocked(CommandPropagator propagator) {
+        Deque<String> ready = readyKeys.get();
+        while (!ready.isEmpty()) {
+            String key = ready.poll();
+            List<StreamWakeUp> wakeUps = new ArrayList<>();
+            KeyLocks.Held held = keyLocks.lockShared(List.of(key));
+            try {
+                synchronized (this) {
+                    serveWaiters(key, wakeUps);
                 }
+            } finally {
+                held.unlock();
+            }
+            for (StreamWakeUp wakeUp : wakeUps) {
+                wakeUp.deliver(propagator);
+            }
+        }
+    }
+
+    /**
+     * XTRIM: returns the number of entries evicted.
+     */
+    public synchronized long xtrim(String key, StreamTrim trim) {
+        if (trim.byMinId) {
+            parseReadId(trim.minId);
+        }
+        StreamLog stream = streams.get(key);
+        long evicted = stream == null ? 0 : trim(stream, trim);
+        if (evicted > 0) {
+            notifier.notify(KeyspaceNotifier.STREAM, "xtrim", key);
+        }
+        return evicted;
+    }
+
+    private long trim(StreamLog stream, StreamTrim trim) {
+        if (trim.byMinId) {
+            EntryId min = parseReadId(trim.minId);
+            return stream.trimBelow(min.getMillisecondsTime(), min.getSequenceNumber(), trim.approximate, trim.limit);
+        }
+        return stream.trimToLength(trim.maxLen, trim.approximate, trim.limit);
+    }
+
+    /**
+     * XDEL: returns how many of the IDs existed and were deleted. Deleted
+     * entries stay in consumer group PELs until acknowledged or claimed.
+     */
+    public synchronized int xdel(String key, String[] ids) {
+        List<EntryId> parsed = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            parsed.add(parseReadId(id));
+        }
+        StreamLog stream = streams.get(key);
+        if (stream == null) {
+            return 0;
+        }
+        int deleted = 0;
+        for (EntryId id : parsed) {
+            if (stream.delete(id.getMillisecondsTime(), id.getSequenceNumber())) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            notifier.notify(KeyspaceNotifier.STREAM, "xdel", key);
+        }
+        return deleted;
+    }
+
+    public int xlen(String key) {
+        StreamLog stream = streams.get(key);
+        return stream == null ? 0 : stream.length();
+    }
+
+    /**
+     * XINFO STREAM snapshot, or null if the key does not exist. Every field
+     * is a maintained counter or an end of the log, so this is O(1).
+     */
+    public synchronized StreamInfo xinfoStream(String key) {
+        StreamLog stream = streams.get(key);
+        if (stream == null) {
+            return null;
+        }
+        StreamEntry first = stream.firstEntry();
+        return new StreamInfo(stream.length(), stream.nodeCount(), stream.lastId(), stream.maxDeletedId(),
+                stream.entriesAdded(), first == null ? "0-0" : first.getId(), stream.groups().size(),
+                first, stream.lastEntry());
+    }
+
+    private String append(String key, String entryId, Map<String, String> fields) {
+        StreamLog stream = streams.get(key);
+        long lastMs = stream == null ? 0 : stream.lastMs();
+        long lastSeq = stream == null ? 0 : stream.lastSeq();
+        // An emptied stream still remembers its last ID
+        boolean empty = stream == null;
+
+        long timeMs;
+        long sequence;
+        if (entryId.equals("*")) {
+            timeMs = System.currentTimeMillis();
+            if (!empty && timeMs <= lastMs) {
+                // Clock hasn't moved past the top item; keep IDs increasing
+                timeMs = lastMs;
+                sequence = lastSeq + 1;
             } else {
-                StreamEntry lastEntry = stream.get(stream.size() - 1);
-                String[] lastParts = lastEntry.getId().split("-");
-                long lastTime = Long.parseLong(lastParts[0]);
-                long lastSeq = Long.parseLong(lastParts[1]);
-                
-                if (lastTime == timeMs) {
-                    sequence = lastSeq + 1;
-                } else {
-                    if (timeMs == 0) {
-                        sequence = 1;
-                    } else {
-                        sequence = 0;
-                    }
-                }
+                sequence = 0;
             }
-            
-            actualEntryId = timeMs + "-" + sequence;
-        }
-        EntryId newId = new EntryId(actualEntryId);
-        EntryId zeroId = new EntryId(0,0);
-        List<StreamEntry> stream = streams.computeIfAbsent(key, k -> new ArrayList<>());
-        if (!stream.isEmpty()) {
-                StreamEntry lastEntry = stream.get(stream.size() - 1);
-                EntryId lastId = new EntryId(lastEntry.getId());
-                
-                if (!newId.isGreaterThan(lastId)) {
-                    throw new IllegalArgumentException("The ID specified in XADD is equal or smaller than the target stream top item");
-                }
+        } else if (entryId.endsWith("-*")) {
+            timeMs = parseIdPart(entryId.substring(0, entryId.length() - 2));
+            if (!empty && lastMs == timeMs) {
+                sequence = lastSeq + 1;
             } else {
-                if (!newId.isGreaterThan(zeroId)) {
-                    throw new IllegalArgumentException("The ID specified in XADD must be greater than 0-0");
-                }
+                sequence = timeMs == 0 ? 1 : 0;
             }
+        } else {
+            EntryId id = new EntryId(entryId);
+            timeMs = id.getMillisecondsTime();
+            sequence = id.getSequenceNumber();
+        }
+
+        if (StreamLog.compare(timeMs, sequence, 0, 0) <= 0) {
+            throw new IllegalArgumentException("The ID specified in XADD must be greater than 0-0");
+        }
+        if (!empty && StreamLog.compare(timeMs, sequence, lastMs, lastSeq) <= 0) {
+            throw new IllegalArgumentException("The ID specified in XADD is equal or smaller than the target stream top item");
+        }
+
+        if (stream == null) {
+            stream = new StreamLog();
+            streams.put(key, stream);
+            notifier.notify(KeyspaceNotifier.NEW, "new", key);
+        }
+        stream.append(timeMs, sequence, fields);
+        return timeMs + "-" + sequence;
+    }
 
-        StreamEntry entry = new StreamEntry(actualEntryId, fields);
-        stream.add(entry);
-        
-        return actualEntryId;
+    /**
+     * Hands new entries of key to its waiters. A waiter whose start ID is
+     * still ahead of the stream (an explicit future ID) keeps waiting.
+     */
+    private void serveWaiters(String key, List<StreamWakeUp> wakeUps) {
+        List<StreamWaiter> queue = waiters.get(key);
+        if (queue == null) {
+            return;
+        }
+        StreamLog stream = streams.get(key);
+        Iterator<StreamWaiter> it = queue.iterator();
+        while (it.hasNext()) {
+            StreamWaiter waiter = it.next();
+            ConsumerGroup group = null;
+            List<StreamEntry> entries;
+            if (waiter.group != null) {
+                group = stream.group(waiter.group);
+                if (group == null) {
+                    continue;  // group destroyed meanwhile; wait for the deadline
+                }
+                entries = stream.after(group.lastMs, group.lastSeq, waiter.count);
+            } else {
+                int i = waiter.indexOf(key);
+                entries = stream.after(waiter.afterMs[i], waiter.afterSeq[i], waiter.count);
+            }
+            if (entries.isEmpty()) {
+                continue;
+            }
+            it.remove();
+            if (!waiter.finish()) {
+                continue;  // timed out concurrently
+            }
+            unregister(waiter);
+            List<String[]> propagation = new ArrayList<>();
+            StreamWakeUp wakeUp = new StreamWakeUp(waiter, key, entries, propagation);
+            if (group != null) {
+                wakeUp.previousMs = group.lastMs;
+                wakeUp.previousSeq = group.lastSeq;
+                deliverToGroup(key, group, waiter.consumer, entries, waiter.noAck,
+                        System.currentTimeMillis(), propagation);
+            }
+            wakeUps.add(wakeUp);
+        }
+        if (queue.isEmpty()) {
+            waiters.remove(key);
+        }
     }
 
     public boolean exists(String key) {
         return streams.containsKey(key);
     }
 
+    public List<StreamEntry> xrange(String key, String startId, String endId) {
+        return xrange(key, startId, endId, -1);
+    }
 
-    public List<StreamEntry> getStream(String key) {
-        return streams.get(key);
+    /**
+     * XRANGE with COUNT (negative = no limit). The scan starts at the
+     * position found by binary search and stops at count or the end ID.
+     */
+    public List<StreamEntry> xrange(String key, String startId, String endId, int count) {
+        EntryId start = parseRangeId(startId, true);
+        EntryId end = parseRangeId(endId, false);
+        StreamLog stream = streams.get(key);
+        if (stream == null || count == 0) {
+            return new ArrayList<>();
+        }
+        return stream.range(start.getMillisecondsTime(), start.getSequenceNumber(),
+                end.getMillisecondsTime(), end.getSequenceNumber(), Math.max(count, 0));
     }
 
-    public synchronized List<StreamEntry> xrange(String key, String startId, String endId) {
-        List<StreamEntry> stream = streams.get(key);
-        
-        if (stream == null || stream.isEmpty()) {
+    /**
+     * XREVRANGE: entries between end and start, newest first, at most count
+     * of them (negative = no limit).
+     */
+    public List<StreamEntry> xrevrange(String key, String endId, String startId, int count) {
+        EntryId end = parseRangeId(endId, false);
+        EntryId start = parseRangeId(startId, true);
+        StreamLog stream = streams.get(key);
+        if (stream == null || count == 0) {
             return new ArrayList<>();
         }
-        
+        return stream.reverseRange(end.getMillisecondsTime(), end.getSequenceNumber(),
+                start.getMillisecondsTime(), start.getSequenceNumber(), Math.max(count, 0));
+    }
+
+    /**
+     * XREAD without blocking: up to count entries after each start ID
+     * ("$" = the current last ID, so nothing). Only streams with new
+     * entries appear in the result.
+     */
+    public List<StreamResult> xread(String[] keys, String[] ids, int count) {
+        List<StreamResult> results = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            StreamLog stream = streams.get(keys[i]);
+            if (stream == null || stream.isEmpty() || ids[i].equals("$")) {
+                continue;
+            }
+            EntryId start = parseReadId(ids[i]);
+            List<StreamEntry> entries = stream.after(start.getMillisecondsTime(), start.getSequenceNumber(), count);
+            if (!entries.isEmpty()) {
+                results.add(new StreamResult(keys[i], entries));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * XREAD BLOCK: reads like xread and, if nothing is available, parks the
+     * waiter on all its keys in the same critical section, so no XADD can
+     * slip in between. Nothing holds a thread while it waits: the next
+     * matching XADD or the timer answers it. A timeout of 0 blocks forever.
+     * Returns the immediate results, or null once the waiter is parked.
+     */
+    public List<StreamResult> readOrBlock(StreamWaiter waiter, long timeoutMs) {
+        waiter.store = this;
+        synchronized (this) {
+            List<StreamResult> results = xread(waiter.keys, waiter.ids, waiter.count);
+            if (!results.isEmpty()) {
+                return results;
+            }
+            for (int i = 0; i < waiter.keys.length; i++) {
+                StreamLog stream = streams.get(waiter.keys[i]);
+                if (waiter.ids[i].equals("$")) {
+                    waiter.afterMs[i] = stream == null ? 0 : stream.lastMs();
+                    waiter.afterSeq[i] = stream == null ? 0 : stream.lastSeq();
+                } else {
+                    EntryId start = parseReadId(waiter.ids[i]);
+                    waiter.afterMs[i] = start.getMillisecondsTime();
+                    waiter.afterSeq[i] = start.getSequenceNumber();
+                }
+                register(waiter.keys[i], waiter);
+            }
+        }
+        if (timeoutMs > 0) {
+            waiter.timeout = timer.newTimeout(() -> expire(waiter), timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return null;
+    }
+
+    private void register(String key, StreamWaiter waiter) {
+        List<StreamWaiter> queue = waiters.computeIfAbsent(key, k -> new ArrayList<>());
+        if (!queue.contains(waiter)) {  // the same key may be listed twice
+            queue.add(waiter);
+        }
+    }
+
+    private void expire(StreamWaiter waiter) {
+        if (!waiter.finish()) {
+            return;  // already served by an XADD
+        }
+        synchronized (this) {
+            unregister(waiter);
+        }
+        waiter.deliverTimeout();
+    }
+
+    /**
+     * Unparks a waiter whose connection closed.
+     */
+    synchronized void unpark(StreamWaiter waiter) {
+        unregister(waiter);
+    }
+
+    /**
+     * Takes back a group delivery whose reply could not be written: its
+     * entries leave the PEL and the group's last-delivered ID moves back, as
+     * if they had never been read. If the group has delivered past them
+     * since, that is impossible, and they stay pending for XCLAIM rather
+     * than being lost. Returns whether the delivery was taken back.
+     */
+    boolean undeliver(StreamWakeUp wakeUp) {
+        KeyLocks.Held held = keyLocks.lockShared(List.of(wakeUp.key));
+        try {
+            synchronized (this) {
+                return undeliverLocked(wakeUp);
+            }
+        } finally {
+            held.unlock();
+        }
+    }
+
+    private boolean undeliverLocked(StreamWakeUp wakeUp) {
+        StreamLog stream = streams.get(wakeUp.key);
+        ConsumerGroup group = stream == null ? null : stream.group(wakeUp.waiter.group);
+        if (group == null) {
+            return true;  // destroyed meanwhile, and its PEL with it
+        }
+        EntryId last = wakeUp.entries.get(wakeUp.entries.size() - 1).getEntryId();
+        if (group.lastMs != last.getMillisecondsTime() || group.lastSeq != last.getSequenceNumber()) {
+            return false;
+        }
+        for (StreamEntry entry : wakeUp.entries) {
+            ConsumerGroup.PendingEntry pending = group.pending.get(entry.getEntryId());
+            if (pending != null && pending.consumer.name.equals(wakeUp.waiter.consumer)) {
+                group.ack(entry.getEntryId());
+            }
+        }
+        group.lastMs = wakeUp.previousMs;
+        group.lastSeq = wakeUp.previousSeq;
+        return true;
+    }
+
+    private void unregister(StreamWaiter waiter) {
+        for (String key : waiter.keys) {
+            List<StreamWaiter> queue = waiters.get(key);
+            if (queue != null) {
+                queue.remove(waiter);
+                if (queue.isEmpty()) {
+                    waiters.remove(key);
+                }
+            }
+        }
+    }
+
+    // ---- Consumer groups ----
+
+    /**
+     * XGROUP CREATE. id "$" starts the group at the current last entry.
+     */
+    public synchronized void createGroup(String key, String groupName, String id, boolean mkStream) {
+        StreamLog stream = streams.get(key);
+        if (stream == null && !mkStream) {
+            throw new IllegalArgumentException("The XGROUP subcommand requires the key to exist. "
+                    + "Note that for CREATE you may want to use the MKSTREAM option to create an empty stream automatically.");
+        }
+        EntryId start = id.equals("$")
+                ? new EntryId(stream == null ? 0 : stream.lastMs(), stream == null ? 0 : stream.lastSeq())
+                : parseReadId(id);
+        if (stream != null && stream.group(groupName) != null) {
+            throw new StreamGroupException("BUSYGROUP", "Consumer Group name already exists");
+        }
+        if (stream == null) {
+            stream = new StreamLog();
+            streams.put(key, stream);
+            notifier.notify(KeyspaceNotifier.NEW, "new", key);
+        }
+        stream.addGroup(new ConsumerGroup(groupName, start.getMillisecondsTime(), start.getSequenceNumber()));
+        notifier.notify(KeyspaceNotifier.STREAM, "xgroup-create", key);
+    }
+
+    /**
+     * XGROUP SETID: moves the group's last-delivered ID.
+     */
+    public synchronized void setGroupId(String key, String groupName, String id) {
+        StreamLog stream = streams.get(key);
+        ConsumerGroup group = requireGroup(key, stream, groupName);
+        EntryId last = id.equals("$") ? new EntryId(stream.lastMs(), stream.lastSeq()) : parseReadId(id);
+        group.lastMs = last.getMillisecondsTime();
+        group.lastSeq = last.getSequenceNumber();
+        notifier.notify(KeyspaceNotifier.STREAM, "xgroup-setid", key);
+    }
+
+    public synchronized boolean destroyGroup(String key, String groupName) {
+        StreamLog stream = streams.get(key);
+        if (stream == null) {
+            throw noGroup(key, groupName);
+        }
+        boolean destroyed = stream.removeGroup(groupName);
+        if (destroyed) {
+            notifier.notify(KeyspaceNotifier.STREAM, "xgroup-destroy", key);
+        }
+        return destroyed;
+    }
+
+    public synchronized boolean createConsumer(String key, String groupName, String consumerName) {
+        ConsumerGroup group = requireGroup(key, streams.get(key), groupName);
+        boolean created = group.createConsumer(consumerName, System.currentTimeMillis());
+        if (created) {
+            notifier.notify(KeyspaceNotifier.STREAM, "xgroup-createconsumer", key);
+        }
+        return created;
+    }
+
+    /**
+     * XGROUP DELCONSUMER: returns the number of entries the consumer still
+     * had pending (they are dropped with it).
+     */
+    public synchronized long deleteConsumer(String key, String groupName, String consumerName) {
+        ConsumerGroup group = requireGroup(key, streams.get(key), groupName);
+        long pending = group.deleteConsumer(consumerName);
+        if (pending >= 0) {
+            notifier.notify(KeyspaceNotifier.STREAM, "xgroup-delconsumer", key);
+        }
+        return Math.max(0, pending);
+    }
+
+    /**
+     * XREADGROUP. For ID ">" a stream returns entries never delivered to the
+     * group and adds them to the consumer's pending list (unless noAck);
+     * any other ID re-reads the consumer's own pending entries after it.
+     * History reads always appear in the result, new-entry reads only when
+     * they found something. Commands that replay the new deliveries on a
+     * replica are added to propagation.
+     */
+    public synchronized List<StreamResult> xreadgroup(String groupName, String consumerName, String[] keys,
+                                                      String[] ids, int count, boolean noAck,
+                                                      List<String[]> propagation) {
+        ConsumerGroup[] groups = new ConsumerGroup[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            groups[i] = requireGroup(keys[i], streams.get(keys[i]), groupName);
+            if (!ids[i].equals(">")) {
+                parseReadId(ids[i]);  // reject bad IDs before touching any group
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        List<StreamResult> results = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            StreamLog stream = streams.get(keys[i]);
+            ConsumerGroup group = groups[i];
+            ConsumerGroup.Consumer consumer = group.consumer(consumerName, now);
+
+            if (ids[i].equals(">")) {
+                List<StreamEntry> entries = stream.after(group.lastMs, group.lastSeq, count);
+                if (!entries.isEmpty()) {
+                    deliverToGroup(keys[i], group, consumerName, entries, noAck, now, propagation);
+                    results.add(new StreamResult(keys[i], entries));
+                }
+                continue;
+            }
+
+            List<StreamEntry> entries = new ArrayList<>();
+            for (ConsumerGroup.PendingEntry pending : consumer.pending.tailMap(parseReadId(ids[i]), false).values()) {
+                if (count > 0 && entries.size() == count) {
+                    break;
+                }
+                group.redeliver(pending, now);
+                entries.add(lookup(stream, pending.id));
+            }
+            results.add(new StreamResult(keys[i], entries));
+        }
+        return results;
+    }
+
+    /**
+     * XREADGROUP BLOCK: like readOrBlock, parking the waiter only when every
+     * stream asked for new entries (">") and none had any.
+     */
+    public List<StreamResult> readGroupOrBlock(StreamWaiter waiter, long timeoutMs, List<String[]> propagation) {
+        waiter.store = this;
+        synchronized (this) {
+            List<StreamResult> results = xreadgroup(waiter.group, waiter.consumer, waiter.keys, waiter.ids,
+                    waiter.count, waiter.noAck, propagation);
+            if (!results.isEmpty()) {
+                return results;
+            }
+            for (String key : waiter.keys) {
+                register(key, waiter);
+            }
+        }
+        if (timeoutMs > 0) {
+            waiter.timeout = timer.newTimeout(() -> expire(waiter), timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return null;
+    }
+
+    public synchronized int xack(String key, String groupName, String[] ids) {
+        StreamLog stream = streams.get(key);
+        ConsumerGroup group = stream == null ? null : stream.group(groupName);
+        List<EntryId> parsed = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            parsed.add(parseReadId(id));
+        }
+        if (group == null) {
+            return 0;
+        }
+        int acked = 0;
+        for (EntryId id : parsed) {
+            if (group.ack(id)) {
+                acked++;
+            }
+        }
+        return acked;
+    }
+
+    /**
+     * XPENDING summary form: count, smallest and largest pending ID, and
+     * pending counts per consumer.
+     */
+    public synchronized PendingSummary xpendingSummary(String key, String groupName) {
+        ConsumerGroup group = requireGroup(key, streams.get(key), groupName);
+        PendingSummary summary = new PendingSummary(group.pending.size());
+        if (!group.pending.isEmpty()) {
+            summary.minId = group.pending.firstKey().toString();
+            summary.maxId = group.pending.lastKey().toString();
+            for (ConsumerGroup.Consumer consumer : group.consumers().values()) {
+                if (!consumer.pending.isEmpty()) {
+                    summary.consumers.add(new String[] { consumer.name, String.valueOf(consumer.pending.size()) });
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * XPENDING extended form: up to count pending entries between start and
+     * end, optionally only those idle for minIdleMs or owned by one consumer.
+     * An IDLE filter walks the group's delivery-time index, so it only
+     * visits entries that qualify.
+     */
+    public synchronized List<PendingInfo> xpending(String key, String groupName, long minIdleMs, String startId,
+                                                   String endId, int count, String consumerName) {
+        ConsumerGroup group = requireGroup(key, streams.get(key), groupName);
         EntryId start = parseRangeId(startId, true);
         EntryId end = parseRangeId(endId, false);
-        
-        List<StreamEntry> result = new ArrayList<>();
-        for (StreamEntry entry : stream) {
-            EntryId entryId = new EntryId(entry.getId());
-            
-            if (entryId.isGreaterThanOrEqual(start) && entryId.isLessThanOrEqual(end)) {
-                result.add(entry);
+        long now = System.currentTimeMillis();
+        List<PendingInfo> result = new ArrayList<>();
+        if (count <= 0 || start.compareTo(end) > 0) {
+            return result;
+        }
+
+        Collection<ConsumerGroup.PendingEntry> candidates;
+        if (minIdleMs > 0) {
+            List<ConsumerGroup.PendingEntry> idle = group.idleAtLeast(minIdleMs, now);
+            idle.sort((a, b) -> a.id.compareTo(b.id));
+            candidates = idle;
+        } else if (consumerName != null) {
+            ConsumerGroup.Consumer consumer = group.consumers().get(consumerName);
+            if (consumer == null) {
+                return result;
+            }
+            candidates = consumer.pending.subMap(start, true, end, true).values();
+        } else {
+            candidates = group.pending.subMap(start, true, end, true).values();
+        }
+
+        for (ConsumerGroup.PendingEntry pending : candidates) {
+            if (result.size() == count) {
+                break;
+            }
+            if (pending.id.compareTo(start) < 0 || pending.id.compareTo(end) > 0) {
+                continue;
             }
+            if (consumerName != null && !pending.consumer.name.equals(consumerName)) {
+                continue;
+            }
+            result.add(new PendingInfo(pending.id.toString(), pending.consumer.name,
+                    now - pending.deliveryTime, pending.deliveryCount));
         }
-        
         return result;
     }
 
-    public synchronized List<StreamEntry> xread(String key, String startId) {
-        List<StreamEntry> stream = streams.get(key);
-        if (stream == null || stream.isEmpty()) {
-            return new ArrayList<>();
+    /**
+     * XCLAIM: moves the given pending entries idle for at least minIdleMs to
+     * consumer. deliveryTime / retryCount of -1 mean "now" and "one more
+     * delivery" (unchanged with JUSTID). FORCE adds IDs that exist in the
+     * stream but are not pending. Entries deleted from the stream are
+     * dropped from the PEL and reported in deleted. lastId (may be null)
+     * advances the group's last-delivered ID.
+     */
+    public synchronized ClaimResult xclaim(String key, String groupName, String consumerName, long minIdleMs,
+                                           String[] ids, long deliveryTime, long retryCount, boolean force,
+                                           boolean justId, String lastId, List<String[]> propagation) {
+        StreamLog stream = streams.get(key);
+        ConsumerGroup group = requireGroup(key, stream, groupName);
+        List<EntryId> parsed = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            parsed.add(parseReadId(id));
+        }
+        if (lastId != null) {
+            EntryId last = parseReadId(lastId);
+            if (StreamLog.compare(last.getMillisecondsTime(), last.getSequenceNumber(),
+                    group.lastMs, group.lastSeq) > 0) {
+                group.lastMs = last.getMillisecondsTime();
+                group.lastSeq = last.getSequenceNumber();
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        ConsumerGroup.Consumer consumer = group.consumer(consumerName, now);
+        ClaimResult result = new ClaimResult();
+        for (EntryId id : parsed) {
+            ConsumerGroup.PendingEntry pending = group.pending.get(id);
+            StreamEntry entry = stream.get(id.getMillisecondsTime(), id.getSequenceNumber());
+            if (entry == null) {
+                if (pending != null) {
+                    group.ack(id);
+                    result.deleted.add(id.toString());
+                }
+                continue;
+            }
+            if (pending == null && !force) {
+                continue;
+            }
+            if (pending != null && minIdleMs > 0 && now - pending.deliveryTime < minIdleMs) {
+                continue;
+            }
+            claim(group, consumer, entry, pending, deliveryTime >= 0 ? deliveryTime : now, retryCount, justId);
+            result.entries.add(entry);
         }
-        
-        EntryId start = new EntryId(startId);
-        List<StreamEntry> result = new ArrayList<>();
-        
-        for (StreamEntry entry : stream) {
-            EntryId entryId = new EntryId(entry.getId());
-            
-            if (entryId.isGreaterThan(start)) {
-                result.add(entry);
+        propagateClaim(key, group, consumerName, result, deliveryTime >= 0 ? deliveryTime : now,
+                lastId != null, propagation);
+        return result;
+    }
+
+    /**
+     * XAUTOCLAIM: scans the PEL from start in ID order and claims up to
+     * count entries idle for at least minIdleMs. The cursor is where the
+     * next call should resume, or 0-0 once the scan reached the end.
+     */
+    public synchronized ClaimResult xautoclaim(String key, String groupName, String consumerName, long minIdleMs,
+                                               String startId, int count, boolean justId,
+                                               List<String[]> propagation) {
+        StreamLog stream = streams.get(key);
+        ConsumerGroup group = requireGroup(key, stream, groupName);
+        EntryId start = parseRangeId(startId, true);
+
+        long now = System.currentTimeMillis();
+        ConsumerGroup.Consumer consumer = group.consumer(consumerName, now);
+        ClaimResult result = new ClaimResult();
+        result.cursor = "0-0";
+        // Like Redis, bound the work per call even if few entries qualify
+        int attempts = count * 10;
+
+        List<EntryId> deleted = new ArrayList<>();
+        for (ConsumerGroup.PendingEntry pending : group.pending.tailMap(start, true).values()) {
+            if (result.entries.size() == count || attempts-- == 0) {
+                result.cursor = pending.id.toString();
+                break;
+            }
+            StreamEntry entry = stream.get(pending.id.getMillisecondsTime(), pending.id.getSequenceNumber());
+            if (entry == null) {
+                deleted.add(pending.id);
+                continue;
+            }
+            if (now - pending.deliveryTime < minIdleMs) {
+                continue;
             }
+            result.entries.add(entry);
+        }
+        for (StreamEntry entry : result.entries) {
+            EntryId id = entry.getEntryId();
+            claim(group, consumer, entry, group.pending.get(id), now, -1, justId);
+        }
+        for (EntryId id : deleted) {
+            group.ack(id);
+            result.deleted.add(id.toString());
         }
-        
+        propagateClaim(key, group, consumerName, result, now, false, propagation);
         return result;
     }
 
+    /**
+     * Replicas can't repeat the idle checks (their delivery times differ),
+     * so a claim is replayed as a forced XCLAIM of exactly the IDs that
+     * changed hands or were dropped as deleted.
+     */
+    private void propagateClaim(String key, ConsumerGroup group, String consumerName, ClaimResult result,
+                                long deliveryTime, boolean movedLastId, List<String[]> propagation) {
+        if (result.entries.isEmpty() && result.deleted.isEmpty()) {
+            if (movedLastId) {
+                propagation.add(new String[] { "XGROUP", "SETID", key, group.name, group.lastId() });
+            }
+            return;
+        }
+        List<String> args = new ArrayList<>(List.of("XCLAIM", key, group.name, consumerName, "0"));
+        for (StreamEntry entry : result.entries) {
+            args.add(entry.getId());
+        }
+        args.addAll(result.deleted);
+        args.addAll(List.of("TIME", String.valueOf(deliveryTime), "FORCE", "JUSTID", "LASTID", group.lastId()));
+        propagation.add(args.toArray(new String[0]));
+    }
+
+    private void claim(ConsumerGroup group, ConsumerGroup.Consumer consumer, StreamEntry entry,
+                       ConsumerGroup.PendingEntry pending, long deliveryTime, long retryCount, boolean justId) {
+        long deliveries;
+        if (retryCount >= 0) {
+            deliveries = retryCount;
+        } else if (pending == null) {
+            deliveries = 1;
+        } else {
+            deliveries = pending.deliveryCount + (justId ? 0 : 1);
+        }
+        group.claim(entry.getEntryId(), consumer, deliveryTime, deliveries);
+    }
+
+    /**
+     * Records a delivery of new entries to a consumer and queues the
+     * command that replays it on a replica: an XCLAIM that recreates the
+     * pending entries and moves the group's last ID, or just XGROUP SETID
+     * under NOACK.
+     */
+    private void deliverToGroup(String key, ConsumerGroup group, String consumerName, List<StreamEntry> entries,
+                                boolean noAck, long now, List<String[]> propagation) {
+        ConsumerGroup.Consumer consumer = group.consumer(consumerName, now);
+        for (StreamEntry entry : entries) {
+            group.deliverNew(entry.getEntryId(), consumer, now, noAck);
+        }
+        if (noAck) {
+            propagation.add(new String[] { "XGROUP", "SETID", key, group.name, group.lastId() });
+            return;
+        }
+        List<String> args = new ArrayList<>(List.of("XCLAIM", key, group.name, consumerName, "0"));
+        for (StreamEntry entry : entries) {
+            args.add(entry.getId());
+        }
+        args.addAll(List.of("TIME", String.valueOf(now), "RETRYCOUNT", "1", "FORCE", "JUSTID", "LASTID", group.lastId()));
+        propagation.add(args.toArray(new String[0]));
+    }
+
+    private static StreamEntry lookup(StreamLog stream, EntryId id) {
+        StreamEntry entry = stream.get(id.getMillisecondsTime(), id.getSequenceNumber());
+        return entry != null ? entry : new StreamEntry(id.getMillisecondsTime(), id.getSequenceNumber(), null);
+    }
+
+    private static ConsumerGroup requireGroup(String key, StreamLog stream, String groupName) {
+        ConsumerGroup group = stream == null ? null : stream.group(groupName);
+        if (group == null) {
+            throw noGroup(key, groupName);
+        }
+        return group;
+    }
+
+    private static StreamGroupException noGroup(String key, String groupName) {
+        return new StreamGroupException("NOGROUP", "No such key '" + key + "' or consumer group '" + groupName + "'");
+    }
+
+    /**
+     * XREAD start IDs may omit the sequence number, meaning ms-0.
+     */
+    private EntryId parseReadId(String id) {
+        if (id.contains("-")) {
+            return new EntryId(id);
+        }
+        return new EntryId(parseIdPart(id), 0);
+    }
+
+    /**
+     * Parses a range bound: "-" / "+" for the smallest / largest ID, an
+     * ID whose missing sequence defaults to the start or end of that
+     * millisecond, or "(" + ID for an exclusive bound.
+     */
     private EntryId parseRangeId(String id, boolean isStart) {
-        if (id.equals("-") && isStart) {
+        if (id.equals("-")) {
             return new EntryId(0, 0);
         }
-        if (id.equals("+") && !isStart) {
+        if (id.equals("+")) {
             return new EntryId(Long.MAX_VALUE, Long.MAX_VALUE);
         }
 
+        boolean exclusive = id.startsWith("(");
+        if (exclusive) {
+            id = id.substring(1);
+        }
+        EntryId parsed;
         if (id.contains("-")) {
-            return new EntryId(id);
+            parsed = new EntryId(id);
         } else {
             // Missing sequence number
-            long time = Long.parseLong(id);
+            long time = parseIdPart(id);
             if (isStart) {
-                return new EntryId(time, 0);  // Start defaults to 0
+                parsed = new EntryId(time, 0);  // Start defaults to 0
             } else {
-                return new EntryId(time, Long.MAX_VALUE);  // End defaults to max
+                parsed = new EntryId(time, Long.MAX_VALUE);  // End defaults to max
+            }
+        }
+        if (!exclusive) {
+            return parsed;
+        }
+
+        long ms = parsed.getMillisecondsTime();
+        long seq = parsed.getSequenceNumber();
+        if (isStart) {
+            if (seq != Long.MAX_VALUE) {
+                return new EntryId(ms, seq + 1);
+            }
+            if (ms != Long.MAX_VALUE) {
+                return new EntryId(ms + 1, 0);
+            }
+            throw new IllegalArgumentException("invalid start ID for the interval");
+        }
+        if (seq != 0) {
+            return new EntryId(ms, seq - 1);
+        }
+        if (ms != 0) {
+            return new EntryId(ms - 1, Long.MAX_VALUE);
+        }
+        throw new IllegalArgumentException("invalid end ID for the interval");
+    }
+
+    static long parseIdPart(String part) {
+        try {
+            long value = Long.parseLong(part);
+            if (value < 0) {
+                throw new NumberFormatException(part);
             }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid stream ID specified as stream command argument");
         }
     }
     
@@ -145,34 +907,60 @@ public class StreamStore {
 
 class StreamEntry {
     private final String id;
+    private final long millisecondsTime;
+    private final long sequenceNumber;
     private final Map<String, String> fields;
 
-    public StreamEntry(String id, Map<String, String> fields) {
-        this.id = id;
-        this.fields = new LinkedHashMap<>(fields); // Preserve insertion order
+    /**
+     * fields is null for an entry that was deleted but is still referenced,
+     * e.g. from a consumer group's pending list.
+     */
+    public StreamEntry(long millisecondsTime, long sequenceNumber, Map<String, String> fields) {
+        this.id = millisecondsTime + "-" + sequenceNumber;
+        this.millisecondsTime = millisecondsTime;
+        this.sequenceNumber = sequenceNumber;
+        this.fields = fields == null ? null : new LinkedHashMap<>(fields); // Preserve insertion order
+    }
+
+    private StreamEntry(long millisecondsTime, long sequenceNumber, Map<String, String> fields, boolean copy) {
+        this.id = millisecondsTime + "-" + sequenceNumber;
+        this.millisecondsTime = millisecondsTime;
+        this.sequenceNumber = sequenceNumber;
+        this.fields = fields;
+    }
+
+    /**
+     * Wraps a map freshly decoded from a StreamNode without copying it.
+     */
+    static StreamEntry decoded(long millisecondsTime, long sequenceNumber, Map<String, String> fields) {
+        return new StreamEntry(millisecondsTime, sequenceNumber, fields, false);
     }
 
     public String getId() {
         return id;
     }
 
+    public EntryId getEntryId() {
+        return new EntryId(millisecondsTime, sequenceNumber);
+    }
+
     public Map<String, String> getFields() {
         return fields;
     }
 }
 
 
-class EntryId {
+class EntryId implements Comparable<EntryId> {
     private final long millisecondsTime;
     private final long sequenceNumber;
 
     public EntryId(String id) {
-        String[] parts = id.split("-");
-        if (parts.length != 2) {
+        int dash = id.indexOf('-');
+        if (dash < 0 || id.indexOf('-', dash + 1) >= 0) {
             throw new IllegalArgumentException("Invalid entry ID format");
         }
-        this.millisecondsTime = Long.parseLong(parts[0]);
-        this.sequenceNumber = Long.parseLong(parts[1]); 
+        this.millisecondsTime = StreamStore.parseIdPart(id.substring(0, dash));
+        this.sequenceNumber = StreamStore.parseIdPart(id.substring(dash + 1));
     }
 
     public EntryId(long millisecondsTime, long sequenceNumber) {
@@ -211,12 +999,186 @@ class EntryId {
             this.sequenceNumber == other.sequenceNumber;
     }
 
+    @Override
+    public int compareTo(EntryId other) {
+        return StreamLog.compare(millisecondsTime, sequenceNumber, other.millisecondsTime, other.sequenceNumber);
+    }
+
     @Override
     public String toString() {
         return millisecondsTime + "-" + sequenceNumber;
     }
 }
 
+/**
+ * A client parked by XREAD BLOCK or XREADGROUP BLOCK on one or more
+ * streams. Whoever calls finish() first (an XADD or the timer) owns the
+ * reply.
+ */
+class StreamWaiter extends ParkedClient {
+    final String[] keys;
+    final String[] ids;     // start IDs as given, "$" included
+    final long[] afterMs;   // resolved start IDs, set when parked (XREAD only)
+    final long[] afterSeq;
+    final int count;
+    final String group;     // XREADGROUP only, null for XREAD
+    final String consumer;
+    final boolean noAck;
+    final OutputStream out;
+    StreamStore store;  // set when parked
+
+    StreamWaiter(String[] keys, String[] ids, int count, OutputStream out) {
+        this(keys, ids, count, null, null, false, out);
+    }
+
+    StreamWaiter(String[] keys, String[] ids, int count, String group, String consumer, boolean noAck,
+                 OutputStream out) {
+        this.keys = keys;
+        this.ids = ids;
+        this.afterMs = new long[keys.length];
+        this.afterSeq = new long[keys.length];
+        this.count = count;
+        this.group = group;
+        this.consumer = consumer;
+        this.noAck = noAck;
+        this.out = out;
+    }
+
+    int indexOf(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    void unregister() {
+        store.unpark(this);
+    }
+
+    /**
+     * Sends the reply; false if the connection is gone.
+     */
+    boolean deliver(String key, List<StreamEntry> entries) {
+        StringBuilder reply = new StringBuilder();
+        StreamReply.appendStreams(reply, List.of(new StreamResult(key, entries)));
+        return write(reply.toString());
+    }
+
+    void deliverTimeout() {
+        write("$-1\r\n");
+    }
+
+    private boolean write(String reply) {
+        try {
+            synchronized (out) {
+                out.write(reply.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            answered();
+        }
+    }
+}
+
+class StreamWakeUp {
+    final StreamWaiter waiter;
+    final String key;
+    final List<StreamEntry> entries;
+    final List<String[]> propagation;  // replays an XREADGROUP delivery on replicas
+    long previousMs;  // the group's last-delivered ID before this delivery
+    long previousSeq;
+
+    StreamWakeUp(StreamWaiter waiter, String key, List<StreamEntry> entries, List<String[]> propagation) {
+        this.waiter = waiter;
+        this.key = key;
+        this.entries = entries;
+        this.propagation = propagation;
+    }
+
+    void deliver(CommandPropagator propagator) {
+        if (waiter.timeout != null) {
+            waiter.timeout.cancel();
+        }
+        // A consumer that never got the entries must not keep them pending
+        if (!waiter.deliver(key, entries) && waiter.group != null && waiter.store.undeliver(this)) {
+            return;
+        }
+        for (String[] args : propagation) {
+            propagator.alsoPropagate(args);
+        }
+    }
+}
+
+class XaddResult {
+    final String id;
+
+    XaddResult(String id) {
+        this.id = id;
+    }
+}
+
+class PendingSummary {
+    final long count;
+    String minId;
+    String maxId;
+    final List<String[]> consumers = new ArrayList<>();  // [name, pending count]
+
+    PendingSummary(long count) {
+        this.count = count;
+    }
+}
+
+class PendingInfo {
+    final String id;
+    final String consumer;
+    final long idleMs;
+    final long deliveries;
+
+    PendingInfo(String id, String consumer, long idleMs, long deliveries) {
+        this.id = id;
+        this.consumer = consumer;
+        this.idleMs = idleMs;
+        this.deliveries = deliveries;
+    }
+}
+
+class StreamInfo {
+    final long length;
+    final long nodes;
+    final String lastGeneratedId;
+    final String maxDeletedId;
+    final long entriesAdded;
+    final String firstId;
+    final long groups;
+    final StreamEntry firstEntry;  // null when empty
+    final StreamEntry lastEntry;
+
+    StreamInfo(long length, long nodes, String lastGeneratedId, String maxDeletedId, long entriesAdded,
+               String firstId, long groups, StreamEntry firstEntry, StreamEntry lastEntry) {
+        this.length = length;
+        this.nodes = nodes;
+        this.lastGeneratedId = lastGeneratedId;
+        this.maxDeletedId = maxDeletedId;
+        this.entriesAdded = entriesAdded;
+        this.firstId = firstId;
+        this.groups = groups;
+        this.firstEntry = firstEntry;
+        this.lastEntry = lastEntry;
+    }
+}
+
+class ClaimResult {
+    final List<StreamEntry> entries = new ArrayList<>();
+    final List<String> deleted = new ArrayList<>();
+    String cursor;  // XAUTOCLAIM only
+}
+
 class StreamResult {
     final String key;
     final List<StreamEntry> entries;
@@ -0,0 +1,71 @@
+/**
+ * MAXLEN / MINID trimming options shared by XADD and XTRIM:
+ * MAXLEN|MINID [=|~] threshold [LIMIT count].
+ */
+class StreamTrim {
+    final boolean byMinId;
+    final boolean approximate;
+    final long maxLen;    // MAXLEN threshold
+    final String minId;   // MINID threshold, parsed by StreamStore
+    final long limit;     // max entries evicted, 0 = no limit (only with ~)
+    final int argCount;   // arguments consumed, including the strategy keyword
+
+    private StreamTrim(boolean byMinId, boolean approximate, long maxLen, String minId, long limit, int argCount) {
+        this.byMinId = byMinId;
+        this.approximate = approximate;
+        this.maxLen = maxLen;
+        this.minId = minId;
+        this.limit = limit;
+        this.argCount = argCount;
+    }
+
+    static boolean isStrategy(String arg) {
+        return arg.equalsIgnoreCase("MAXLEN") || arg.equalsIgnoreCase("MINID");
+    }
+
+    /**
+     * Parses the trimming clause starting at args[from], which must be
+     * MAXLEN or MINID.
+     */
+    static StreamTrim parse(String[] args, int from) {
+        boolean byMinId = args[from].equalsIgnoreCase("MINID");
+        int i = from + 1;
+        boolean approximate = false;
+        if (i < args.length && (args[i].equals("~") || args[i].equals("="))) {
+            approximate = args[i].equals("~");
+            i++;
+        }
+        if (i >= args.length) {
+            throw new IllegalArgumentException("syntax error");
+        }
+        String threshold = args[i++];
+        long maxLen = 0;
+        if (!byMinId) {
+            try {
+                maxLen = Long.parseLong(threshold);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("value is not an integer or out of range");
+            }
+            if (maxLen < 0) {
+                throw new IllegalArgumentException("The MAXLEN argument must be >= 0.");
+            }
+        }
+
+        long limit = 0;
+        if (i + 1 < args.length && args[i].equalsIgnoreCase("LIMIT")) {
+            if (!approximate) {
+                throw new IllegalArgumentException("syntax error, LIMIT cannot be used without the special ~ option");
+            }
+            try {
+                limit = Long.parseLong(args[i + 1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("value is not an integer or out of range");
+            }
+            if (limit < 0) {
+                throw new IllegalArgumentException("The LIMIT argument must be >= 0.");
+            }
+            i += 2;
+        }
+        return new StreamTrim(byMinId, approximate, maxLen, byMinId ? threshold : null, limit, i - from);
+    }
+}
@@ -36,8 +36,7 @@ public class SubscribeCommandHandler extends BaseCommandHandler {
         
         response.append("$9\r\nsubscribe\r\n");
         
-        response.append("$").append(channel.length()).append("\r\n");
-        response.append(channel).append("\r\n");
+        appendBulk(response, channel);
         
         response.append(":").append(count).append("\r\n");
         
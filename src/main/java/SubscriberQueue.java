@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound pub/sub messages for one subscribed client.
+ *
+ * PUBLISH only enqueues an already-encoded frame (a lock-free add) and
+ * never touches the subscriber's socket. A drain task, at most one per
+ * subscriber at a time, writes queued frames in order and flushes once per
+ * batch. Drains and the client's own pub/sub replies both write while
+ * holding the client's OutputStream monitor, like every other cross-thread
+ * writer, so frames never interleave.
+ *
+ * The queue is open only while the client is in subscribed mode: closing
+ * it (under the monitor) discards anything still queued, so no message is
+ * written after the reply that ended the last subscription.
+ *
+ * Each drain runs on its own virtual thread, so a subscriber whose socket
+ * blocks a write parks only that thread and never delays delivery to the
+ * others. Subscribers that can't keep up are disconnected as Redis does
+ * with its client-output-buffer-limit for pubsub (32mb 8mb 60): at once
+ * when more than MAX_PENDING_BYTES are queued, or once more than
+ * SOFT_PENDING_BYTES have stayed queued for SOFT_LIMIT_MS.
+ */
+public class SubscriberQueue {
+    static final long MAX_PENDING_BYTES = 32L << 20;
+    static final long SOFT_PENDING_BYTES = 8L << 20;
+    static final long SOFT_LIMIT_MS = 60_000;
+
+    private static final ExecutorService DELIVERY = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final OutputStream out;
+    private final ConcurrentLinkedQueue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean open;
+    private volatile long overSoftLimitSince;  // System.nanoTime(), 0 when under it
+
+    public SubscriberQueue(OutputStream out) {
+        this.out = out;
+    }
+
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Queues a frame for delivery. Returns false if the client is no longer
+     * subscribed or has been disconnected for falling behind.
+     */
+    public boolean enqueue(byte[] frame) {
+        if (!open) {
+            return false;
+        }
+        long queued = pendingBytes.addAndGet(frame.length);
+        if (queued > MAX_PENDING_BYTES) {
+            disconnect("pending output over " + MAX_PENDING_BYTES + " bytes");
+            return false;
+        }
+        if (queued > SOFT_PENDING_BYTES) {
+            long now = System.nanoTime();
+            long since = overSoftLimitSince;
+            if (since == 0) {
+                overSoftLimitSince = now;
+            } else if (now - since > SOFT_LIMIT_MS * 1_000_000) {
+                disconnect("pending output over " + SOFT_PENDING_BYTES + " bytes for " + SOFT_LIMIT_MS + "ms");
+                return false;
+            }
+        }
+        pending.add(frame);
+        if (scheduled.compareAndSet(false, true)) {
+            DELIVERY.execute(this::drain);
+        }
+        return true;
+    }
+
+    /**
+     * Called with out's monitor held when the client enters or leaves
+     * subscribed mode.
+     */
+    void setOpen(boolean open) {
+        this.open = open;
+        if (!open) {
+            pending.clear();
+            pendingBytes.set(0);
+            overSoftLimitSince = 0;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            synchronized (out) {
+                try {
+                    byte[] frame;
+                    boolean wrote = false;
+                    while ((frame = pending.poll()) != null) {
+                        if (pendingBytes.addAndGet(-frame.length) <= SOFT_PENDING_BYTES) {
+                            overSoftLimitSince = 0;
+                        }
+                        if (open) {
+                            out.write(frame);
+                            wrote = true;
+                        }
+                    }
+                    if (wrote) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // The client's own thread sees the broken connection and cleans up
+                    open = false;
+                    pending.clear();
+                }
+            }
+            scheduled.set(false);
+            // A frame added after the last poll but before the reset needs another pass
+            if (pending.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes the client's socket, which also fails a write blocked on it.
+     */
+    private void disconnect(String reason) {
+        open = false;
+        pending.clear();
+        System.err.println("Disconnecting subscriber: " + reason);
+        try {
+            out.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class SunsubscribeCommandHandler extends BaseCommandHandler {
+    private final PubSubContext pubSubContext;
+    
+    public SunsubscribeCommandHandler(PubSubContext pubSubContext) {
+        this.pubSubContext = pubSubContext;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        // No arguments means every shard channel this client is subscribed to
+        List<String> shardChannels = args.length > 1
+            ? Arrays.asList(args).subList(1, args.length)
+            : new ArrayList<>(pubSubContext.getSubscribedShardChannels());
+        
+        if (shardChannels.isEmpty()) {
+            sendSunsubscribeResponse(out, null, pubSubContext.getShardSubscriptionCount());
+            return;
+        }
+        
+        for (String shardChannel : shardChannels) {
+            pubSubContext.sunsubscribe(shardChannel);
+            sendSunsubscribeResponse(out, shardChannel, pubSubContext.getShardSubscriptionCount());
+        }
+    }
+    
+    private void sendSunsubscribeResponse(OutputStream out, String shardChannel, int count) throws IOException {
+        StringBuilder response = new StringBuilder();
+        
+        response.append("*3\r\n");
+        
+        response.append("$12\r\nsunsubscribe\r\n");
+        
+        if (shardChannel == null) {
+            response.append("$-1\r\n");
+        } else {
+            response.append("$").append(shardChannel.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
+            response.append(shardChannel).append("\r\n");
+        }
+        
+        response.append(":").append(count).append("\r\n");
+        
+        out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "SUNSUBSCRIBE";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; 
+    }
+}
@@ -7,6 +7,7 @@ import java.util.List;
 public class TransactionContext {
     private boolean inTransaction = false;
     private final List<QueuedCommand> commandQueue = new ArrayList<>();
+    private final List<WatchedKeys.Watch> watches = new ArrayList<>();
     
     public boolean isInTransaction() {
         return inTransaction;
@@ -33,6 +34,25 @@ public class TransactionContext {
     public void clearQueue() {
         commandQueue.clear();
     }
+    
+    public void addWatch(WatchedKeys.Watch watch) {
+        watches.add(watch);
+    }
+    
+    public List<WatchedKeys.Watch> getWatches() {
+        return watches;
+    }
+    
+    /**
+     * Drops every WATCH of this connection (UNWATCH, EXEC, DISCARD, RESET,
+     * disconnect).
+     */
+    public void unwatchAll(WatchedKeys watchedKeys) {
+        for (WatchedKeys.Watch watch : watches) {
+            watchedKeys.unwatch(watch);
+        }
+        watches.clear();
+    }
 }
 
 
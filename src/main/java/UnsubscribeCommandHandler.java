@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class UnsubscribeCommandHandler extends BaseCommandHandler {
+    private final PubSubContext pubSubContext;
+    
+    public UnsubscribeCommandHandler(PubSubContext pubSubContext) {
+        this.pubSubContext = pubSubContext;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        // No arguments means every channel this client is subscribed to
+        List<String> channels = args.length > 1
+            ? Arrays.asList(args).subList(1, args.length)
+            : new ArrayList<>(pubSubContext.getSubscribedChannels());
+        
+        if (channels.isEmpty()) {
+            sendUnsubscribeResponse(out, null, pubSubContext.getSubscriptionCount());
+            return;
+        }
+        
+        for (String channel : channels) {
+            pubSubContext.unsubscribe(channel);
+            sendUnsubscribeResponse(out, channel, pubSubContext.getSubscriptionCount());
+        }
+    }
+    
+    private void sendUnsubscribeResponse(OutputStream out, String channel, int count) throws IOException {
+        StringBuilder response = new StringBuilder();
+        
+        response.append("*3\r\n");
+        
+        response.append("$11\r\nunsubscribe\r\n");
+        
+        if (channel == null) {
+            response.append("$-1\r\n");
+        } else {
+            response.append("$").append(channel.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
+            response.append(channel).append("\r\n");
+        }
+        
+        response.append(":").append(count).append("\r\n");
+        
+        out.write(response.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "UNSUBSCRIBE";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; 
+    }
+}
@@ -0,0 +1,31 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class UnwatchCommandHandler extends BaseCommandHandler {
+    private final TransactionContext transactionContext;
+    private final WatchedKeys watchedKeys;
+    
+    public UnwatchCommandHandler(TransactionContext transactionContext, WatchedKeys watchedKeys) {
+        this.transactionContext = transactionContext;
+        this.watchedKeys = watchedKeys;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        // No context: queued inside MULTI, and EXEC drops the watches itself
+        if (transactionContext != null) {
+            transactionContext.unwatchAll(watchedKeys);
+        }
+        sendSimpleString(out, "OK");
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "UNWATCH";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false;
+    }
+}
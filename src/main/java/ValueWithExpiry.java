@@ -1,6 +1,7 @@
 public class ValueWithExpiry {
     private final String value;
     private final long expiryTime; // in milliseconds
+    volatile HashedWheelTimer.Timeout timeout;  // the pending expiry, if it has a TTL
 
     public ValueWithExpiry(String value, long expiryTime) {
         this.value = value;
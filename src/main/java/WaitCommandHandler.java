@@ -2,7 +2,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Handles the WAIT command for checking replica acknowledgments.
@@ -17,10 +18,13 @@ import java.util.concurrent.*;
 public class WaitCommandHandler extends BaseCommandHandler {
     private final List<OutputStream> connectedReplicas;
     private final ReplicationTracker replicationTracker;
+    private final HashedWheelTimer timer;
     
-    public WaitCommandHandler(List<OutputStream> connectedReplicas, ReplicationTracker replicationTracker) {
+    public WaitCommandHandler(List<OutputStream> connectedReplicas, ReplicationTracker replicationTracker,
+                              HashedWheelTimer timer) {
         this.connectedReplicas = connectedReplicas;
         this.replicationTracker = replicationTracker;
+        this.timer = timer;
     }
     
     @Override
@@ -93,25 +97,31 @@ public class WaitCommandHandler extends BaseCommandHandler {
         
         sendGetAckToReplicas(replicasCopy);
         
-        long deadline = System.currentTimeMillis() + timeoutMs;
         int ackedCount = 0;
         
-        while (System.currentTimeMillis() < deadline) {
-            // Count how many replicas have reached the expected offset
-            ackedCount = replicationTracker.countReplicasAtOffset(expectedOffset, replicasCopy);
+        if (timeoutMs > 0) {
+            // Each ACK wakes us to recount; the shared timer wakes us at the deadline
+            AtomicBoolean timedOut = new AtomicBoolean(false);
+            HashedWheelTimer.Timeout deadline = timer.newTimeout(() -> {
+                timedOut.set(true);
+                replicationTracker.wakeWaiters();
+            }, timeoutMs, TimeUnit.MILLISECONDS);
             
-            // If we have enough replicas, return early
-            if (ackedCount >= numReplicas) {
-                break;
-            }
-            
-            // Wait a bit before checking again (poll every 10ms)
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+            synchronized (replicationTracker) {
+                while (!timedOut.get()) {
+                    ackedCount = replicationTracker.countReplicasAtOffset(expectedOffset, replicasCopy);
+                    if (ackedCount >= numReplicas) {
+                        break;
+                    }
+                    try {
+                        replicationTracker.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
             }
+            deadline.cancel();
         }
         
         // Final count (either we got enough, or timeout expired)
@@ -0,0 +1,39 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class WatchCommandHandler extends BaseCommandHandler {
+    private final TransactionContext transactionContext;
+    private final WatchedKeys watchedKeys;
+    
+    public WatchCommandHandler(TransactionContext transactionContext, WatchedKeys watchedKeys) {
+        this.transactionContext = transactionContext;
+        this.watchedKeys = watchedKeys;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 2) {
+            sendError(out, "wrong number of arguments for 'watch' command");
+            return;
+        }
+        if (transactionContext.isInTransaction()) {
+            sendError(out, "WATCH inside MULTI is not allowed");
+            return;
+        }
+        
+        for (int i = 1; i < args.length; i++) {
+            transactionContext.addWatch(watchedKeys.watch(args[i]));
+        }
+        sendSimpleString(out, "OK");
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "WATCH";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Modification versions for WATCHed keys.
+ *
+ * Only keys some connection is watching have a version. Every change the
+ * stores report (writes, deletions, expiry) bumps the key's version, and
+ * EXEC compares it with the version each WATCH saw. Nothing is stored or
+ * counted for keys nobody watches, and while no connection watches
+ * anything a change costs one volatile read.
+ */
+public class WatchedKeys {
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger watches = new AtomicInteger();
+
+    /**
+     * Registers a watch on key and returns it with the version seen now.
+     */
+    public Watch watch(String key) {
+        Entry entry = entries.compute(key, (k, existing) -> {
+            Entry e = existing != null ? existing : new Entry();
+            e.refs++;
+            return e;
+        });
+        watches.incrementAndGet();
+        return new Watch(key, entry, entry.version.get());
+    }
+
+    public void unwatch(Watch watch) {
+        entries.computeIfPresent(watch.key, (k, e) -> --e.refs == 0 ? null : e);
+        watches.decrementAndGet();
+    }
+
+    /**
+     * Whether the key changed since the watch was registered.
+     */
+    public boolean isModified(Watch watch) {
+        return watch.entry.version.get() != watch.version;
+    }
+
+    /**
+     * Called for every change to key, from KeyspaceNotifier.
+     */
+    public void touch(String key) {
+        if (watches.get() == 0) {
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.version.incrementAndGet();
+        }
+    }
+
+    private static final class Entry {
+        final AtomicLong version = new AtomicLong();
+        int refs;  // guarded by the map's compute
+    }
+
+    public static final class Watch {
+        final String key;
+        private final Entry entry;
+        private final long version;
+
+        Watch(String key, Entry entry, long version) {
+            this.key = key;
+            this.entry = entry;
+            this.version = version;
+        }
+    }
+}
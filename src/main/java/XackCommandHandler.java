@@ -0,0 +1,36 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class XackCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    
+    public XackCommandHandler(StreamStore streamStore) {
+        this.streamStore = streamStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 4) {
+            sendError(out, "wrong number of arguments for 'xack' command");
+            return;
+        }
+        
+        try {
+            int acked = streamStore.xack(args[1], args[2], Arrays.copyOfRange(args, 3, args.length));
+            sendInteger(out, acked);
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XACK";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // XACK removes entries from the pending list
+    }
+}
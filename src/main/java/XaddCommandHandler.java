@@ -18,21 +18,45 @@ public class XaddCommandHandler extends BaseCommandHandler {
         }
         
         String key = args[1];
-        String entryId = args[2];
         
-        // Parse field-value pairs
-        Map<String, String> fields = new LinkedHashMap<>();
-        for (int i = 3; i < args.length; i += 2) {
-            if (i + 1 >= args.length) {
-                sendError(out, "XADD requires field-value pairs");
+        try {
+            // XADD key [NOMKSTREAM] [MAXLEN|MINID [=|~] threshold [LIMIT count]] id field value ...
+            boolean noMkStream = false;
+            StreamTrim trim = null;
+            int i = 2;
+            while (i < args.length) {
+                if (args[i].equalsIgnoreCase("NOMKSTREAM")) {
+                    noMkStream = true;
+                    i++;
+                } else if (trim == null && StreamTrim.isStrategy(args[i])) {
+                    trim = StreamTrim.parse(args, i);
+                    i += trim.argCount;
+                } else {
+                    break;
+                }
+            }
+            if (i >= args.length) {
+                sendError(out, "wrong number of arguments for 'xadd' command");
                 return;
             }
-            fields.put(args[i], args[i + 1]);
-        }
-        
-        try {
-            String actualEntryId = streamStore.xadd(key, entryId, fields);
-            sendBulkString(out, actualEntryId);
+            String entryId = args[i++];
+            
+            // Parse field-value pairs
+            if (i >= args.length || (args.length - i) % 2 != 0) {
+                sendError(out, "wrong number of arguments for 'xadd' command");
+                return;
+            }
+            Map<String, String> fields = new LinkedHashMap<>();
+            for (; i < args.length; i += 2) {
+                fields.put(args[i], args[i + 1]);
+            }
+            
+            XaddResult result = streamStore.xadd(key, entryId, fields, trim, noMkStream);
+            if (result.id == null) {
+                sendNullBulkString(out);
+                return;
+            }
+            sendBulkString(out, result.id);
         } catch (IllegalArgumentException e) {
             sendError(out, e.getMessage());
         }
@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class XautoclaimCommandHandler extends BaseCommandHandler {
+    private static final int DEFAULT_COUNT = 100;
+
+    private final StreamStore streamStore;
+    private final CommandPropagator propagator;
+    
+    public XautoclaimCommandHandler(StreamStore streamStore, CommandPropagator propagator) {
+        this.streamStore = streamStore;
+        this.propagator = propagator;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 6) {
+            sendError(out, "wrong number of arguments for 'xautoclaim' command");
+            return;
+        }
+        
+        long minIdle;
+        int count = DEFAULT_COUNT;
+        boolean justId = false;
+        try {
+            minIdle = Math.max(0, Long.parseLong(args[4]));
+            for (int i = 6; i < args.length; i++) {
+                if (args[i].equalsIgnoreCase("JUSTID")) {
+                    justId = true;
+                } else if (args[i].equalsIgnoreCase("COUNT") && i + 1 < args.length) {
+                    long value = Long.parseLong(args[++i]);
+                    if (value < 1 || value > Integer.MAX_VALUE / 10) {
+                        sendError(out, "COUNT must be > 0");
+                        return;
+                    }
+                    count = (int) value;
+                } else {
+                    sendError(out, "syntax error");
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            sendError(out, "value is not an integer or out of range");
+            return;
+        }
+        
+        List<String[]> propagation = new ArrayList<>();
+        ClaimResult result;
+        try {
+            result = streamStore.xautoclaim(args[1], args[2], args[3], minIdle, args[5], count, justId, propagation);
+        } catch (StreamGroupException e) {
+            sendError(out, e.code, e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+            return;
+        }
+        for (String[] command : propagation) {
+            propagator.alsoPropagate(command);
+        }
+        
+        // [next cursor, claimed entries (or IDs), IDs dropped as deleted]
+        StringBuilder reply = new StringBuilder("*3\r\n");
+        StreamReply.appendBulk(reply, result.cursor);
+        if (justId) {
+            StreamReply.appendIds(reply, result.entries);
+        } else {
+            StreamReply.appendEntries(reply, result.entries);
+        }
+        reply.append("*").append(result.deleted.size()).append("\r\n");
+        for (String id : result.deleted) {
+            StreamReply.appendBulk(reply, id);
+        }
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XAUTOCLAIM";
+    }
+}
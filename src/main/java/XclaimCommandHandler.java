@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class XclaimCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    private final CommandPropagator propagator;
+    
+    public XclaimCommandHandler(StreamStore streamStore, CommandPropagator propagator) {
+        this.streamStore = streamStore;
+        this.propagator = propagator;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 6) {
+            sendError(out, "wrong number of arguments for 'xclaim' command");
+            return;
+        }
+        
+        String key = args[1];
+        String group = args[2];
+        String consumer = args[3];
+        long minIdle;
+        long deliveryTime = -1;
+        long retryCount = -1;
+        boolean force = false;
+        boolean justId = false;
+        String lastId = null;
+        List<String> ids = new ArrayList<>();
+        
+        try {
+            minIdle = Math.max(0, Long.parseLong(args[4]));
+            int i = 5;
+            // IDs run until the first option keyword
+            while (i < args.length && !isOption(args[i])) {
+                ids.add(args[i++]);
+            }
+            long now = System.currentTimeMillis();
+            for (; i < args.length; i++) {
+                String option = args[i].toUpperCase();
+                if (option.equals("FORCE")) {
+                    force = true;
+                } else if (option.equals("JUSTID")) {
+                    justId = true;
+                } else if (i + 1 < args.length && option.equals("IDLE")) {
+                    deliveryTime = now - Math.max(0, Long.parseLong(args[++i]));
+                } else if (i + 1 < args.length && option.equals("TIME")) {
+                    deliveryTime = Long.parseLong(args[++i]);
+                } else if (i + 1 < args.length && option.equals("RETRYCOUNT")) {
+                    retryCount = Math.max(0, Long.parseLong(args[++i]));
+                } else if (i + 1 < args.length && option.equals("LASTID")) {
+                    lastId = args[++i];
+                } else {
+                    sendError(out, "syntax error");
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            sendError(out, "Invalid min-idle-time argument for XCLAIM");
+            return;
+        }
+        if (ids.isEmpty()) {
+            sendError(out, "wrong number of arguments for 'xclaim' command");
+            return;
+        }
+        
+        List<String[]> propagation = new ArrayList<>();
+        ClaimResult result;
+        try {
+            result = streamStore.xclaim(key, group, consumer, minIdle, ids.toArray(new String[0]),
+                    deliveryTime, retryCount, force, justId, lastId, propagation);
+        } catch (StreamGroupException e) {
+            sendError(out, e.code, e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+            return;
+        }
+        for (String[] command : propagation) {
+            propagator.alsoPropagate(command);
+        }
+        
+        StringBuilder reply = new StringBuilder();
+        if (justId) {
+            StreamReply.appendIds(reply, result.entries);
+        } else {
+            StreamReply.appendEntries(reply, result.entries);
+        }
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    private static boolean isOption(String arg) {
+        switch (arg.toUpperCase()) {
+            case "IDLE": case "TIME": case "RETRYCOUNT": case "FORCE": case "JUSTID": case "LASTID":
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XCLAIM";
+    }
+}
@@ -0,0 +1,35 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class XdelCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    
+    public XdelCommandHandler(StreamStore streamStore) {
+        this.streamStore = streamStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 3) {
+            sendError(out, "wrong number of arguments for 'xdel' command");
+            return;
+        }
+        
+        try {
+            sendInteger(out, streamStore.xdel(args[1], Arrays.copyOfRange(args, 2, args.length)));
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XDEL";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // XDEL removes entries
+    }
+}
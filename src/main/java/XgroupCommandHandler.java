@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class XgroupCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    
+    public XgroupCommandHandler(StreamStore streamStore) {
+        this.streamStore = streamStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 4) {
+            sendError(out, "wrong number of arguments for 'xgroup' command");
+            return;
+        }
+        
+        String subcommand = args[1].toUpperCase();
+        String key = args[2];
+        String group = args[3];
+        
+        try {
+            switch (subcommand) {
+                case "CREATE": {
+                    if (args.length < 5) {
+                        sendError(out, "wrong number of arguments for 'xgroup|create' command");
+                        return;
+                    }
+                    boolean mkStream = false;
+                    for (int i = 5; i < args.length; i++) {
+                        if (args[i].equalsIgnoreCase("MKSTREAM")) {
+                            mkStream = true;
+                        } else if (args[i].equalsIgnoreCase("ENTRIESREAD") && i + 1 < args.length) {
+                            i++;  // lag tracking is not implemented; accept and ignore
+                        } else {
+                            sendError(out, "syntax error");
+                            return;
+                        }
+                    }
+                    streamStore.createGroup(key, group, args[4], mkStream);
+                    sendSimpleString(out, "OK");
+                    return;
+                }
+                case "SETID":
+                    if (args.length < 5) {
+                        sendError(out, "wrong number of arguments for 'xgroup|setid' command");
+                        return;
+                    }
+                    streamStore.setGroupId(key, group, args[4]);
+                    sendSimpleString(out, "OK");
+                    return;
+                case "DESTROY":
+                    sendInteger(out, streamStore.destroyGroup(key, group) ? 1 : 0);
+                    return;
+                case "CREATECONSUMER":
+                    if (args.length < 5) {
+                        sendError(out, "wrong number of arguments for 'xgroup|createconsumer' command");
+                        return;
+                    }
+                    sendInteger(out, streamStore.createConsumer(key, group, args[4]) ? 1 : 0);
+                    return;
+                case "DELCONSUMER":
+                    if (args.length < 5) {
+                        sendError(out, "wrong number of arguments for 'xgroup|delconsumer' command");
+                        return;
+                    }
+                    sendInteger(out, (int) streamStore.deleteConsumer(key, group, args[4]));
+                    return;
+                default:
+                    sendError(out, "unknown subcommand '" + args[1] + "'. Try XGROUP HELP.");
+            }
+        } catch (StreamGroupException e) {
+            sendError(out, e.code, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XGROUP";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // XGROUP changes consumer group state
+    }
+}
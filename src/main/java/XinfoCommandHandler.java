@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class XinfoCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    
+    public XinfoCommandHandler(StreamStore streamStore) {
+        this.streamStore = streamStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length < 3) {
+            sendError(out, "wrong number of arguments for 'xinfo' command");
+            return;
+        }
+        if (!args[1].equalsIgnoreCase("STREAM") || args.length != 3) {
+            sendError(out, "unknown subcommand '" + args[1] + "'. Try XINFO STREAM.");
+            return;
+        }
+        
+        StreamInfo info = streamStore.xinfoStream(args[2]);
+        if (info == null) {
+            sendError(out, "no such key");
+            return;
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        sb.append("*20\r\n");
+        StreamReply.appendBulk(sb, "length");
+        sb.append(":").append(info.length).append("\r\n");
+        // Macro-nodes stand in for the radix tree keys and nodes of Redis
+        StreamReply.appendBulk(sb, "radix-tree-keys");
+        sb.append(":").append(info.nodes).append("\r\n");
+        StreamReply.appendBulk(sb, "radix-tree-nodes");
+        sb.append(":").append(info.nodes).append("\r\n");
+        StreamReply.appendBulk(sb, "last-generated-id");
+        StreamReply.appendBulk(sb, info.lastGeneratedId);
+        StreamReply.appendBulk(sb, "max-deleted-entry-id");
+        StreamReply.appendBulk(sb, info.maxDeletedId);
+        StreamReply.appendBulk(sb, "entries-added");
+        sb.append(":").append(info.entriesAdded).append("\r\n");
+        StreamReply.appendBulk(sb, "recorded-first-entry-id");
+        StreamReply.appendBulk(sb, info.firstId);
+        StreamReply.appendBulk(sb, "groups");
+        sb.append(":").append(info.groups).append("\r\n");
+        StreamReply.appendBulk(sb, "first-entry");
+        appendEntry(sb, info.firstEntry);
+        StreamReply.appendBulk(sb, "last-entry");
+        appendEntry(sb, info.lastEntry);
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private void appendEntry(StringBuilder sb, StreamEntry entry) {
+        if (entry == null) {
+            sb.append("$-1\r\n");
+        } else {
+            StreamReply.appendEntry(sb, entry);
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XINFO";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; // XINFO is read-only
+    }
+}
@@ -0,0 +1,30 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class XlenCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    
+    public XlenCommandHandler(StreamStore streamStore) {
+        this.streamStore = streamStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length != 2) {
+            sendError(out, "wrong number of arguments for 'xlen' command");
+            return;
+        }
+        
+        sendInteger(out, streamStore.xlen(args[1]));
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XLEN";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; // XLEN is read-only
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class XpendingCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    
+    public XpendingCommandHandler(StreamStore streamStore) {
+        this.streamStore = streamStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        if (args.length != 3 && args.length < 6) {
+            sendError(out, "wrong number of arguments for 'xpending' command");
+            return;
+        }
+        
+        String key = args[1];
+        String group = args[2];
+        StringBuilder reply = new StringBuilder();
+        
+        try {
+            if (args.length == 3) {
+                appendSummary(reply, streamStore.xpendingSummary(key, group));
+            } else {
+                // XPENDING key group [IDLE min-idle] start end count [consumer]
+                int i = 3;
+                long minIdle = 0;
+                if (args[i].equalsIgnoreCase("IDLE")) {
+                    minIdle = Long.parseLong(args[i + 1]);
+                    i += 2;
+                }
+                if (args.length - i < 3 || args.length - i > 4) {
+                    sendError(out, "syntax error");
+                    return;
+                }
+                long count = Long.parseLong(args[i + 2]);
+                String consumer = args.length - i == 4 ? args[i + 3] : null;
+                List<PendingInfo> pending = streamStore.xpending(key, group, minIdle, args[i], args[i + 1],
+                        (int) Math.max(0, Math.min(count, Integer.MAX_VALUE)), consumer);
+                appendExtended(reply, pending);
+            }
+        } catch (StreamGroupException e) {
+            sendError(out, e.code, e.getMessage());
+            return;
+        } catch (NumberFormatException e) {
+            sendError(out, "value is not an integer or out of range");
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+            return;
+        }
+        
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    private void appendSummary(StringBuilder reply, PendingSummary summary) {
+        reply.append("*4\r\n:").append(summary.count).append("\r\n");
+        if (summary.count == 0) {
+            reply.append("$-1\r\n$-1\r\n*-1\r\n");
+            return;
+        }
+        StreamReply.appendBulk(reply, summary.minId);
+        StreamReply.appendBulk(reply, summary.maxId);
+        reply.append("*").append(summary.consumers.size()).append("\r\n");
+        for (String[] consumer : summary.consumers) {
+            reply.append("*2\r\n");
+            StreamReply.appendBulk(reply, consumer[0]);
+            StreamReply.appendBulk(reply, consumer[1]);
+        }
+    }
+    
+    private void appendExtended(StringBuilder reply, List<PendingInfo> pending) {
+        reply.append("*").append(pending.size()).append("\r\n");
+        for (PendingInfo info : pending) {
+            reply.append("*4\r\n");
+            StreamReply.appendBulk(reply, info.id);
+            StreamReply.appendBulk(reply, info.consumer);
+            reply.append(":").append(info.idleMs).append("\r\n");
+            reply.append(":").append(info.deliveries).append("\r\n");
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XPENDING";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; // XPENDING only reads group state
+    }
+}
@@ -2,7 +2,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Map;
 
 public class XrangeCommandHandler extends BaseCommandHandler {
     private final StreamStore streamStore;
@@ -13,8 +12,9 @@ public class XrangeCommandHandler extends BaseCommandHandler {
     
     @Override
     public void execute(String[] args, OutputStream out) throws IOException {
-        if (args.length < 4) {
-            sendError(out, "XRANGE requires key, start, and end");
+        // XRANGE key start end [COUNT count]
+        if (args.length != 4 && args.length != 6) {
+            sendError(out, "wrong number of arguments for 'xrange' command");
             return;
         }
         
@@ -22,31 +22,36 @@ public class XrangeCommandHandler extends BaseCommandHandler {
         String startId = args[2];
         String endId = args[3];
         
-        List<StreamEntry> entries = streamStore.xrange(key, startId, endId);
-        sendStreamEntries(out, entries);
+        try {
+            int count = parseCount(args);
+            List<StreamEntry> entries = streamStore.xrange(key, startId, endId, count);
+            sendStreamEntries(out, entries);
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+        }
     }
     
-    private void sendStreamEntries(OutputStream out, List<StreamEntry> entries) throws IOException {
-        out.write(("*" + entries.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
-        for (StreamEntry entry : entries) {
-            out.write("*2\r\n".getBytes(StandardCharsets.UTF_8));
-            
-            String id = entry.getId();
-            out.write(("$" + id.length() + "\r\n" + id + "\r\n").getBytes(StandardCharsets.UTF_8));
-            
-            Map<String, String> fields = entry.getFields();
-            int fieldCount = fields.size() * 2;
-            out.write(("*" + fieldCount + "\r\n").getBytes(StandardCharsets.UTF_8));
-            
-            for (Map.Entry<String, String> field : fields.entrySet()) {
-                String fieldName = field.getKey();
-                String fieldValue = field.getValue();
-                out.write(("$" + fieldName.length() + "\r\n" + fieldName + "\r\n")
-                        .getBytes(StandardCharsets.UTF_8));
-                out.write(("$" + fieldValue.length() + "\r\n" + fieldValue + "\r\n")
-                        .getBytes(StandardCharsets.UTF_8));
-            }
+    /**
+     * The optional COUNT argument shared with XREVRANGE; -1 when absent.
+     */
+    static int parseCount(String[] args) {
+        if (args.length == 4) {
+            return -1;
+        }
+        if (!args[4].equalsIgnoreCase("COUNT")) {
+            throw new IllegalArgumentException("syntax error");
+        }
+        try {
+            return Math.max(Integer.parseInt(args[5]), 0);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("value is not an integer or out of range");
         }
+    }
+    
+    static void sendStreamEntries(OutputStream out, List<StreamEntry> entries) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        StreamReply.appendEntries(sb, entries);
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
         out.flush();
     }
     
@@ -59,4 +64,4 @@ public class XrangeCommandHandler extends BaseCommandHandler {
     public boolean isWriteCommand() {
         return false; // XRANGE only reads data
     }
-}
\ No newline at end of file
+}
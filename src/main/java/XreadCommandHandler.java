@@ -1,9 +1,7 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class XreadCommandHandler extends BaseCommandHandler {
     private final StreamStore streamStore;
@@ -14,33 +12,55 @@ public class XreadCommandHandler extends BaseCommandHandler {
     
     @Override
     public void execute(String[] args, OutputStream out) throws IOException {
+        execute(args, out, null);
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out, BlockingContext blocking) throws IOException {
         if (args.length < 4) {
             sendError(out, "XREAD requires STREAMS keyword and at least one key-id pair");
             return;
         }
         
         long blockMs = 0;
-        int argsStartIdx = 2;
+        boolean block = false;
+        int count = 0;
+        int argsStartIdx = 1;
         
-        // Check for BLOCK option
-        if (args.length >= 4 && args[1].equalsIgnoreCase("BLOCK")) {
+        // Options come before STREAMS: [COUNT n] [BLOCK ms]
+        while (argsStartIdx < args.length && !args[argsStartIdx].equalsIgnoreCase("STREAMS")) {
+            String option = args[argsStartIdx].toUpperCase();
+            if (argsStartIdx + 1 >= args.length || !(option.equals("BLOCK") || option.equals("COUNT"))) {
+                sendError(out, "syntax error");
+                return;
+            }
             try {
-                blockMs = Long.parseLong(args[2]);
-                argsStartIdx = 4;
+                long value = Long.parseLong(args[argsStartIdx + 1]);
+                if (value < 0) {
+                    throw new NumberFormatException();
+                }
+                if (option.equals("BLOCK")) {
+                    blockMs = value;
+                    block = true;
+                } else {
+                    count = (int) Math.min(value, Integer.MAX_VALUE);
+                }
             } catch (NumberFormatException e) {
-                sendError(out, "BLOCK timeout must be a number");
+                sendError(out, option + " value must be a non-negative integer");
                 return;
             }
+            argsStartIdx += 2;
         }
         
         // Check for STREAMS keyword
-        if (!args[argsStartIdx - 1].equalsIgnoreCase("STREAMS")) {
+        if (argsStartIdx >= args.length) {
             sendError(out, "XREAD requires STREAMS keyword");
             return;
         }
+        argsStartIdx++;
         
         int argsAfterStreams = args.length - argsStartIdx;
-        if (argsAfterStreams % 2 != 0) {
+        if (argsAfterStreams == 0 || argsAfterStreams % 2 != 0) {
             sendError(out, "Unbalanced XREAD STREAMS list");
             return;
         }
@@ -54,125 +74,34 @@ public class XreadCommandHandler extends BaseCommandHandler {
             ids[i] = args[argsStartIdx + numStreams + i];
         }
         
-        List<StreamResult> results = new ArrayList<>();
-        for (int i = 0; i < numStreams; i++) {
-            List<StreamEntry> entries = streamStore.xread(keys[i], ids[i]);
-            results.add(new StreamResult(keys[i], entries));
-        }
-        
-        boolean hasData = false;
-        for (StreamResult r : results) {
-            if (!r.entries.isEmpty()) {
-                hasData = true;
-                break;
-            }
-        }
-        
-        if (hasData) {
-            sendXReadMultipleResponse(out, results);
-        } else if (blockMs > 0) {
-            long deadline = System.currentTimeMillis() + blockMs;
-            
-            while (System.currentTimeMillis() < deadline) {
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    break;
-                }
-                
-                results.clear();
-                for (int i = 0; i < numStreams; i++) {
-                    List<StreamEntry> entries = streamStore.xread(keys[i], ids[i]);
-                    results.add(new StreamResult(keys[i], entries));
-                }
-                
-                hasData = false;
-                for (StreamResult r : results) {
-                    if (!r.entries.isEmpty()) {
-                        hasData = true;
-                        break;
-                    }
-                }
-                if (hasData) {
-                    sendXReadMultipleResponse(out, results);
+        List<StreamResult> results;
+        try {
+            if (!block || blocking == null) {
+                results = streamStore.xread(keys, ids, count);
+            } else {
+                // Parked clients are answered by XADD or the timer, not this thread
+                StreamWaiter waiter = new StreamWaiter(keys, ids, count, out);
+                results = streamStore.readOrBlock(waiter, blockMs);
+                if (results == null) {
+                    blocking.park(waiter);
                     return;
                 }
             }
-            
-            sendNullBulkString(out);
-        } else if (blockMs == 0) {
-            while (true) {
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    break;
-                }
-                
-                results.clear();
-                for (int i = 0; i < numStreams; i++) {
-                    List<StreamEntry> entries = streamStore.xread(keys[i], ids[i]);
-                    results.add(new StreamResult(keys[i], entries));
-                }
-                
-                hasData = false;
-                for (StreamResult r : results) {
-                    if (!r.entries.isEmpty()) {
-                        hasData = true;
-                        break;
-                    }
-                }
-                
-                if (hasData) {
-                    sendXReadMultipleResponse(out, results);
-                    return;
-                }
-            }
-        } else {
-            sendXReadMultipleResponse(out, results);
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+            return;
         }
-    }
-    
-    private void sendXReadMultipleResponse(OutputStream out, List<StreamResult> results) throws IOException {
-        // Send array of streams
-        out.write(("*" + results.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
         
-        for (StreamResult result : results) {
-            // Each stream: [key, [entries]]
-            out.write("*2\r\n".getBytes(StandardCharsets.UTF_8));
-            
-            // Stream key
-            out.write(("$" + result.key.length() + "\r\n" + result.key + "\r\n")
-                    .getBytes(StandardCharsets.UTF_8));
-            
-            // Entries
-            sendStreamEntries(out, result.entries);
+        if (results.isEmpty()) {
+            sendNullBulkString(out);
+            return;
         }
+        StringBuilder reply = new StringBuilder();
+        StreamReply.appendStreams(reply, results);
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
         out.flush();
     }
     
-    private void sendStreamEntries(OutputStream out, List<StreamEntry> entries) throws IOException {
-        out.write(("*" + entries.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
-        for (StreamEntry entry : entries) {
-            out.write("*2\r\n".getBytes(StandardCharsets.UTF_8));
-            
-            String id = entry.getId();
-            out.write(("$" + id.length() + "\r\n" + id + "\r\n").getBytes(StandardCharsets.UTF_8));
-            
-            Map<String, String> fields = entry.getFields();
-            int fieldCount = fields.size() * 2;
-            out.write(("*" + fieldCount + "\r\n").getBytes(StandardCharsets.UTF_8));
-            
-            for (Map.Entry<String, String> field : fields.entrySet()) {
-                String fieldName = field.getKey();
-                String fieldValue = field.getValue();
-                out.write(("$" + fieldName.length() + "\r\n" + fieldName + "\r\n")
-                        .getBytes(StandardCharsets.UTF_8));
-                out.write(("$" + fieldValue.length() + "\r\n" + fieldValue + "\r\n")
-                        .getBytes(StandardCharsets.UTF_8));
-            }
-        }
-    }
-    
     @Override
     public String getCommandName() {
         return "XREAD";
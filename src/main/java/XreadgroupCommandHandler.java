@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class XreadgroupCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    private final CommandPropagator propagator;
+    
+    public XreadgroupCommandHandler(StreamStore streamStore, CommandPropagator propagator) {
+        this.streamStore = streamStore;
+        this.propagator = propagator;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        execute(args, out, null);
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out, BlockingContext blocking) throws IOException {
+        if (args.length < 7 || !args[1].equalsIgnoreCase("GROUP")) {
+            sendError(out, "XREADGROUP requires GROUP group consumer, STREAMS keyword and at least one key-id pair");
+            return;
+        }
+        
+        String group = args[2];
+        String consumer = args[3];
+        long blockMs = 0;
+        boolean block = false;
+        boolean noAck = false;
+        int count = 0;
+        int argsStartIdx = 4;
+        
+        // Options come before STREAMS: [COUNT n] [BLOCK ms] [NOACK]
+        while (argsStartIdx < args.length && !args[argsStartIdx].equalsIgnoreCase("STREAMS")) {
+            String option = args[argsStartIdx].toUpperCase();
+            if (option.equals("NOACK")) {
+                noAck = true;
+                argsStartIdx++;
+                continue;
+            }
+            if (argsStartIdx + 1 >= args.length || !(option.equals("BLOCK") || option.equals("COUNT"))) {
+                sendError(out, "syntax error");
+                return;
+            }
+            try {
+                long value = Long.parseLong(args[argsStartIdx + 1]);
+                if (value < 0) {
+                    throw new NumberFormatException();
+                }
+                if (option.equals("BLOCK")) {
+                    blockMs = value;
+                    block = true;
+                } else {
+                    count = (int) Math.min(value, Integer.MAX_VALUE);
+                }
+            } catch (NumberFormatException e) {
+                sendError(out, option + " value must be a non-negative integer");
+                return;
+            }
+            argsStartIdx += 2;
+        }
+        
+        if (argsStartIdx >= args.length) {
+            sendError(out, "XREADGROUP requires STREAMS keyword");
+            return;
+        }
+        argsStartIdx++;
+        
+        int argsAfterStreams = args.length - argsStartIdx;
+        if (argsAfterStreams == 0 || argsAfterStreams % 2 != 0) {
+            sendError(out, "Unbalanced XREADGROUP STREAMS list");
+            return;
+        }
+        
+        int numStreams = argsAfterStreams / 2;
+        String[] keys = new String[numStreams];
+        String[] ids = new String[numStreams];
+        for (int i = 0; i < numStreams; i++) {
+            keys[i] = args[argsStartIdx + i];
+            ids[i] = args[argsStartIdx + numStreams + i];
+        }
+        
+        List<String[]> propagation = new ArrayList<>();
+        List<StreamResult> results;
+        try {
+            if (!block || blocking == null) {
+                results = streamStore.xreadgroup(group, consumer, keys, ids, count, noAck, propagation);
+            } else {
+                StreamWaiter waiter = new StreamWaiter(keys, ids, count, group, consumer, noAck, out);
+                results = streamStore.readGroupOrBlock(waiter, blockMs, propagation);
+                if (results == null) {
+                    blocking.park(waiter);
+                }
+            }
+        } catch (StreamGroupException e) {
+            sendError(out, e.code, e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+            return;
+        }
+        
+        // Replicas replay the delivery rather than re-running the read
+        for (String[] command : propagation) {
+            propagator.alsoPropagate(command);
+        }
+        if (results == null) {
+            return;  // parked; XADD or the timer answers
+        }
+        if (results.isEmpty()) {
+            sendNullBulkString(out);
+            return;
+        }
+        StringBuilder reply = new StringBuilder();
+        StreamReply.appendStreams(reply, results);
+        out.write(reply.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XREADGROUP";
+    }
+}
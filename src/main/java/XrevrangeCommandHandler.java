@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public class XrevrangeCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    
+    public XrevrangeCommandHandler(StreamStore streamStore) {
+        this.streamStore = streamStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        // XREVRANGE key end start [COUNT count]
+        if (args.length != 4 && args.length != 6) {
+            sendError(out, "wrong number of arguments for 'xrevrange' command");
+            return;
+        }
+        
+        try {
+            int count = XrangeCommandHandler.parseCount(args);
+            List<StreamEntry> entries = streamStore.xrevrange(args[1], args[2], args[3], count);
+            XrangeCommandHandler.sendStreamEntries(out, entries);
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XREVRANGE";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return false; // XREVRANGE only reads data
+    }
+}
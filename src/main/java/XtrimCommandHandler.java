@@ -0,0 +1,44 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class XtrimCommandHandler extends BaseCommandHandler {
+    private final StreamStore streamStore;
+    
+    public XtrimCommandHandler(StreamStore streamStore) {
+        this.streamStore = streamStore;
+    }
+    
+    @Override
+    public void execute(String[] args, OutputStream out) throws IOException {
+        // XTRIM key MAXLEN|MINID [=|~] threshold [LIMIT count]
+        if (args.length < 4) {
+            sendError(out, "wrong number of arguments for 'xtrim' command");
+            return;
+        }
+        
+        try {
+            if (!StreamTrim.isStrategy(args[2])) {
+                sendError(out, "syntax error");
+                return;
+            }
+            StreamTrim trim = StreamTrim.parse(args, 2);
+            if (2 + trim.argCount != args.length) {
+                sendError(out, "syntax error");
+                return;
+            }
+            sendInteger(out, (int) streamStore.xtrim(args[1], trim));
+        } catch (IllegalArgumentException e) {
+            sendError(out, e.getMessage());
+        }
+    }
+    
+    @Override
+    public String getCommandName() {
+        return "XTRIM";
+    }
+    
+    @Override
+    public boolean isWriteCommand() {
+        return true; // XTRIM evicts entries
+    }
+}